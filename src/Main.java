@@ -1,4 +1,8 @@
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import service.AdminMenuController;
 import service.AdminService;
 import service.AppointmentService;
@@ -11,6 +15,7 @@ import service.MenuController;
 import service.PatientMenuController;
 import service.PatientService;
 import util.InputUtil;
+import util.PersistencePipeline;
 
 import model.Admin;
 import model.Doctor;
@@ -34,13 +39,9 @@ public class Main {    private static AdminService adminService;
         // Initialize file structure
         initializeFileStructure();
           // Initialize services
-        adminService = new AdminService();
-        doctorService = new DoctorService();
-        patientService = new PatientService();
-        diagnosisService = new DiagnosisService();
-        appointmentService = new AppointmentService();
-        appointmentService.setDiagnosisService(diagnosisService);
-        authService = new AuthService(adminService, doctorService, patientService);
+        if (!initializeServices()) {
+            return;
+        }
         
         // Main application loop
         boolean running = true;
@@ -48,9 +49,42 @@ public class Main {    private static AdminService adminService;
             running = mainMenu();
         }
         
+        // Wait for queued writes to reach disk before exiting
+        PersistencePipeline.getInstance().flush().join();
         System.out.println("Thank you for using Daisuke Clinic!");
     }
     
+    /**
+     * Create the services. Each one loads its own data file in its constructor, so the
+     * five files are loaded at the same time and joined before the menu starts. Returns
+     * false if a data file could not be loaded.
+     */
+    private static boolean initializeServices() {
+        ExecutorService loader = Executors.newFixedThreadPool(5);
+        try {
+            CompletableFuture<AdminService> admins = CompletableFuture.supplyAsync(AdminService::new, loader);
+            CompletableFuture<DoctorService> doctors = CompletableFuture.supplyAsync(DoctorService::new, loader);
+            CompletableFuture<PatientService> patients = CompletableFuture.supplyAsync(PatientService::new, loader);
+            CompletableFuture<DiagnosisService> diagnoses = CompletableFuture.supplyAsync(DiagnosisService::new, loader);
+            CompletableFuture<AppointmentService> appointments = CompletableFuture.supplyAsync(AppointmentService::new, loader);
+            
+            adminService = admins.join();
+            doctorService = doctors.join();
+            patientService = patients.join();
+            diagnosisService = diagnoses.join();
+            appointmentService = appointments.join();
+        } catch (CompletionException e) {
+            System.err.println("Error loading data: " + e.getCause().getMessage());
+            return false;
+        } finally {
+            loader.shutdown();
+        }
+        appointmentService.setDiagnosisService(diagnosisService);
+        appointmentService.setDoctorService(doctorService);
+        authService = new AuthService(adminService, doctorService, patientService);
+        return true;
+    }
+    
     private static boolean mainMenu() {
         System.out.println("\n===== Main Menu =====");
         String[] options = {
@@ -136,9 +170,7 @@ public class Main {    private static AdminService adminService;
             username = InputUtil.getRequiredString("Enter your username");
             
             // Check if username already exists
-            if (adminService.findAdminByUsername(username) != null ||
-                doctorService.findDoctorByUsername(username) != null ||
-                patientService.findPatientByUsername(username) != null) {
+            if (authService.isUsernameTaken(username)) {
                 System.out.println("Username already exists. Please choose another one.");
                 username = null;
             }
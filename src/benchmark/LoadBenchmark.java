@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import datastructure.LinkedList;
+import model.Diagnosis;
+import model.Patient;
+import service.DiagnosisService;
+import service.PatientService;
+import util.PersistencePipeline;
+
+/**
+ * Benchmark showing that loading Patient.txt and Diagnosis.txt grows linearly with the
+ * number of records: the time per record should stay flat as the record count doubles.
+ *
+ * The services read fixed paths under data/, so run it from an empty directory:
+ *   mkdir /tmp/clinic-bench && cd /tmp/clinic-bench
+ *   java -cp /path/to/bin benchmark.LoadBenchmark [maxRecords]
+ */
+public class LoadBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int maxRecords = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        if (!prepareDataDirectory()) {
+            return;
+        }
+        System.setProperty("clinic.durability", "WRITE");
+
+        // Warm up the JIT on the smallest size so the first row is not mostly compilation
+        timeListAdd(maxRecords / 8);
+        timePatientLoad(maxRecords / 8);
+        timeDiagnosisLoad(maxRecords / 8);
+
+        System.out.printf("%10s %14s %14s %14s%n", "records", "LinkedList.add", "Patient.txt", "Diagnosis.txt");
+        for (int records = maxRecords / 8; records <= maxRecords; records *= 2) {
+            System.out.printf("%10d %14s %14s %14s%n", records,
+                    perRecord(timeListAdd(records), records),
+                    perRecord(timePatientLoad(records), records),
+                    perRecord(timeDiagnosisLoad(records), records));
+        }
+        deleteFiles();
+    }
+
+    /**
+     * Check that the working directory holds no clinic data the benchmark would overwrite
+     */
+    private static boolean prepareDataDirectory() {
+        File directory = new File("data");
+        String[] existing = directory.list();
+        if (existing != null && existing.length > 0) {
+            System.err.println("data/ is not empty in " + new File("").getAbsolutePath()
+                    + ". Run the benchmark from an empty directory.");
+            return false;
+        }
+        return directory.isDirectory() || directory.mkdirs();
+    }
+
+    private static long timeListAdd(int records) {
+        LinkedList<Integer> list = new LinkedList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            list.add(i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timePatientLoad(int records) throws IOException {
+        deleteFiles();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter("data/Patient.txt"))) {
+            for (int id = 1; id <= records; id++) {
+                Patient patient = new Patient(id, "Patient " + id, 20 + id % 60, "Street " + id,
+                        "0812" + id, "patient" + id, "secret" + id);
+                writer.write(patient.toFileString());
+                writer.newLine();
+            }
+        }
+        long start = System.nanoTime();
+        new PatientService();
+        return System.nanoTime() - start;
+    }
+
+    private static long timeDiagnosisLoad(int records) throws IOException, InterruptedException {
+        deleteFiles();
+        LocalDateTime time = LocalDateTime.of(2025, 1, 1, 8, 0);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter("data/Diagnosis.txt"))) {
+            for (int id = 1; id <= records; id++) {
+                Diagnosis record = new Diagnosis(id, id, 1 + id % 5000, 1 + id % 50, time.plusMinutes(id),
+                        "Fever, cough and headache for " + id % 10 + " days", "Influenza", "Paracetamol 500mg");
+                writer.write(record.toFileString());
+                writer.newLine();
+            }
+        }
+        long start = System.nanoTime();
+        new DiagnosisService();
+        long elapsed = System.nanoTime() - start;
+        // The first load writes a Diagnosis.dat generation in the background; let it finish
+        // before the files are deleted, or the next round would map it instead of parsing the text
+        PersistencePipeline.getInstance().flush().join();
+        while (!diagnosisDataWritten()) {
+            Thread.sleep(10);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Check if a Diagnosis.dat generation exists and none is still being written
+     */
+    private static boolean diagnosisDataWritten() {
+        String[] names = new File("data").list();
+        boolean written = false;
+        for (String name : names != null ? names : new String[0]) {
+            if (name.startsWith("Diagnosis.dat.")) {
+                if (name.endsWith(".tmp")) {
+                    return false;
+                }
+                written = true;
+            }
+        }
+        return written;
+    }
+
+    private static String perRecord(long nanos, int records) {
+        return String.format("%.0f ns/rec", (double) nanos / records);
+    }
+
+    /**
+     * Delete everything in data/, which held nothing before the benchmark started
+     */
+    private static void deleteFiles() {
+        File[] files = new File("data").listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+
+import model.Diagnosis;
+import util.ParallelRecordParser;
+import util.RecordTokenizer;
+
+/**
+ * Benchmark of ParallelRecordParser on pools of growing parallelism, up to the number of
+ * cores. It writes diagnosis lines to a temporary file and times reading and parsing them
+ * the way DiagnosisService loads Diagnosis.txt. The first row is the time to only read the
+ * lines, which no amount of parallel parsing can go below.
+ *
+ *   java -cp /path/to/bin benchmark.ParallelParseBenchmark [lines]
+ */
+public class ParallelParseBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        File file = File.createTempFile("diagnosis", ".txt");
+        file.deleteOnExit();
+        writeLines(file, lineCount);
+        ParallelRecordParser.LineSource source = ParallelRecordParser.lines(file.getPath());
+
+        System.out.printf("%d lines, %d cores%n", lineCount, cores);
+        System.out.printf("%12s %12s %9s%n", "parallelism", "time", "speedup");
+        long read = best(() -> {
+            int[] count = new int[1];
+            source.forEach(line -> count[0]++);
+            return count[0];
+        });
+        System.out.printf("%12s %9d ms%n", "read only", read / 1_000_000);
+
+        long single = 0;
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            long time = best(() -> ParallelRecordParser.parse(source, ParallelParseBenchmark::parse,
+                    Diagnosis[]::new, pool).length);
+            pool.shutdown();
+            if (parallelism == 1) {
+                single = time;
+            }
+            System.out.printf("%12d %9d ms %8.2fx%n", parallelism, time / 1_000_000, (double) single / time);
+        }
+    }
+
+    private static void writeLines(File file, int count) throws IOException {
+        LocalDateTime time = LocalDateTime.of(2025, 1, 1, 8, 0);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int id = 1; id <= count; id++) {
+                Diagnosis record = new Diagnosis(id, id, 1 + id % 5000, 1 + id % 50, time.plusMinutes(id),
+                        "Fever, cough and headache for " + id % 10 + " days", "Influenza", "Paracetamol 500mg");
+                writer.write(record.toFileString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Parse a line the way DiagnosisService does
+     */
+    private static Diagnosis parse(RecordTokenizer tokenizer, String line) {
+        tokenizer.reset(line);
+        Diagnosis record = new Diagnosis(tokenizer.nextInt(), tokenizer.nextInt(), tokenizer.nextInt(),
+                tokenizer.nextInt(), tokenizer.nextDateTime(), tokenizer.nextString(), tokenizer.nextString(),
+                tokenizer.nextString());
+        return tokenizer.hasMissingFields() ? null : record;
+    }
+
+    private interface Run {
+        int run() throws IOException;
+    }
+
+    /**
+     * Get the fastest of several runs in nanoseconds, after one warm-up run
+     */
+    private static long best(Run run) throws IOException {
+        int expected = run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            if (run.run() != expected) {
+                throw new IllegalStateException("Parse results differ between runs");
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
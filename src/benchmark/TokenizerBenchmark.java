@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+
+import util.RecordTokenizer;
+
+/**
+ * Benchmark of RecordTokenizer against the String.split with a lookahead regex that the
+ * loaders used before. Both parse the same diagnosis lines into their eight fields, for
+ * free-text fields of growing length. The lines contain no escaped commas, since the old
+ * regex drops the leading fields of any line that has one. Lengths stop below about 3000
+ * characters per line, where the regex overflows the default thread stack.
+ *
+ *   java -cp /path/to/bin benchmark.TokenizerBenchmark [lines]
+ */
+public class TokenizerBenchmark {
+    private static final String OLD_SPLIT = ",(?=([^\\\\]|\\\\[^,])*$)";
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        System.out.printf("%10s %14s %14s %9s%n", "text chars", "String.split", "tokenizer", "speedup");
+        for (int textLength = 16; textLength <= 512; textLength *= 2) {
+            String[] lines = makeLines(lineCount, textLength);
+            if (parseWithSplit(lines) != parseWithTokenizer(lines)) {
+                throw new IllegalStateException("String.split and the tokenizer read different fields");
+            }
+            long split = best(() -> parseWithSplit(lines));
+            long tokenizer = best(() -> parseWithTokenizer(lines));
+            System.out.printf("%10d %11d ns %11d ns %8.1fx%n", textLength * 3,
+                    split / lineCount, tokenizer / lineCount, (double) split / tokenizer);
+        }
+    }
+
+    private static String[] makeLines(int count, int textLength) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < textLength) {
+            text.append("fever cough ");
+        }
+        String field = text.substring(0, textLength);
+        String[] lines = new String[count];
+        LocalDateTime time = LocalDateTime.of(2025, 1, 1, 8, 0);
+        for (int i = 0; i < count; i++) {
+            lines[i] = i + "," + i + "," + (i % 5000) + "," + (i % 50) + "," + time.plusMinutes(i)
+                    + "," + field + "," + field + "," + field;
+        }
+        return lines;
+    }
+
+    /**
+     * Parse the lines the way the loaders did before RecordTokenizer
+     */
+    private static int parseWithSplit(String[] lines) {
+        int checksum = 0;
+        for (String line : lines) {
+            String[] parts = line.split(OLD_SPLIT);
+            if (parts.length >= 8) {
+                checksum += Integer.parseInt(parts[0]) + Integer.parseInt(parts[1])
+                        + Integer.parseInt(parts[2]) + Integer.parseInt(parts[3]);
+                checksum += LocalDateTime.parse(parts[4]).getMinute();
+                checksum += parts[5].replace("\\,", ",").length() + parts[6].replace("\\,", ",").length()
+                        + parts[7].replace("\\,", ",").length();
+            }
+        }
+        return checksum;
+    }
+
+    private static int parseWithTokenizer(String[] lines) {
+        RecordTokenizer tokenizer = new RecordTokenizer();
+        int checksum = 0;
+        for (String line : lines) {
+            int sum = tokenizer.reset(line).nextInt() + tokenizer.nextInt() + tokenizer.nextInt() + tokenizer.nextInt();
+            sum += tokenizer.nextDateTime().getMinute();
+            sum += tokenizer.nextString().length() + tokenizer.nextString().length() + tokenizer.nextString().length();
+            if (!tokenizer.hasMissingFields()) {
+                checksum += sum;
+            }
+        }
+        return checksum;
+    }
+
+    private interface Run {
+        int run();
+    }
+
+    /**
+     * Get the fastest of several runs in nanoseconds, after one warm-up run
+     */
+    private static long best(Run run) {
+        int expected = run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            if (run.run() != expected) {
+                throw new IllegalStateException("Parse results differ between runs");
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
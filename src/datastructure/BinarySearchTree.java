@@ -3,108 +3,168 @@ package datastructure;
 import java.util.function.Consumer;
 
 /**
- * Implementation of a Binary Search Tree
+ * Implementation of a self-balancing Binary Search Tree (red-black tree).
+ * All operations are iterative, so the height stays O(log n) and no operation
+ * recurses, even when elements are inserted in ascending order.
  */
 public class BinarySearchTree<T extends Comparable<T>> {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
     private static class TreeNode<E> {
         private E data;
         private TreeNode<E> left;
         private TreeNode<E> right;
+        private TreeNode<E> parent;
+        private boolean color;
 
-        public TreeNode(E data) {
+        public TreeNode(E data, TreeNode<E> nil) {
             this.data = data;
-            this.left = null;
-            this.right = null;
+            this.left = nil;
+            this.right = nil;
+            this.parent = nil;
+            this.color = RED;
         }
     }
 
+    private final TreeNode<T> nil;  // Shared black sentinel used in place of null leaves
     private TreeNode<T> root;
     private int size;
 
     public BinarySearchTree() {
-        this.root = null;
+        this.nil = new TreeNode<>(null, null);
+        this.nil.color = BLACK;
+        this.root = nil;
         this.size = 0;
     }
 
     /**
-     * Insert a new element into the tree
+     * Insert a new element into the tree. An element that compares equal to an
+     * existing one replaces it.
      */
     public void insert(T data) {
-        root = insertRec(root, data);
-        size++;
-    }
+        TreeNode<T> parent = nil;
+        TreeNode<T> current = root;
+        int compareResult = 0;
 
-    private TreeNode<T> insertRec(TreeNode<T> root, T data) {
-        if (root == null) {
-            return new TreeNode<>(data);
+        while (current != nil) {
+            parent = current;
+            compareResult = data.compareTo(current.data);
+            if (compareResult == 0) {
+                current.data = data;
+                return;
+            }
+            current = compareResult < 0 ? current.left : current.right;
         }
 
-        int compareResult = data.compareTo(root.data);
-        if (compareResult < 0) {
-            root.left = insertRec(root.left, data);
-        } else if (compareResult > 0) {
-            root.right = insertRec(root.right, data);
+        TreeNode<T> node = new TreeNode<>(data, nil);
+        node.parent = parent;
+        if (parent == nil) {
+            root = node;
+        } else if (compareResult < 0) {
+            parent.left = node;
+        } else {
+            parent.right = node;
         }
-        
-        return root;
+        size++;
+        insertFixup(node);
     }
 
     /**
      * Search for an element in the tree
      */
     public T search(T data) {
-        return searchRec(root, data);
+        TreeNode<T> node = findNode(data);
+        return node != nil ? node.data : null;
     }
 
-    private T searchRec(TreeNode<T> root, T data) {
-        if (root == null) {
-            return null;
+    /**
+     * Delete the element that compares equal to the given one
+     */
+    public boolean delete(T data) {
+        TreeNode<T> node = findNode(data);
+        if (node == nil) {
+            return false;
         }
+        deleteNode(node);
+        size--;
+        return true;
+    }
 
-        int compareResult = data.compareTo(root.data);
-        if (compareResult == 0) {
-            return root.data;
+    /**
+     * Get the greatest element less than or equal to the given one
+     */
+    public T floor(T data) {
+        TreeNode<T> current = root;
+        T result = null;
+        while (current != nil) {
+            int compareResult = data.compareTo(current.data);
+            if (compareResult == 0) {
+                return current.data;
+            }
+            if (compareResult < 0) {
+                current = current.left;
+            } else {
+                result = current.data;
+                current = current.right;
+            }
         }
+        return result;
+    }
 
-        if (compareResult < 0) {
-            return searchRec(root.left, data);
-        } else {
-            return searchRec(root.right, data);
+    /**
+     * Get the smallest element greater than or equal to the given one
+     */
+    public T ceiling(T data) {
+        return ceilingNode(data).data;
+    }
+
+    /**
+     * Get all elements between from and to (both inclusive) in sorted order
+     */
+    public LinkedList<T> range(T from, T to) {
+        LinkedList<T> result = new LinkedList<>();
+        TreeNode<T> node = ceilingNode(from);
+        while (node != nil && node.data.compareTo(to) <= 0) {
+            result.add(node.data);
+            node = successor(node);
         }
+        return result;
     }
 
     /**
      * Perform an in-order traversal of the tree
      */
     public void inOrderTraversal(Consumer<T> action) {
-        inOrderRec(root, action);
+        if (root == nil) {
+            return;
+        }
+        TreeNode<T> node = minimum(root);
+        while (node != nil) {
+            action.accept(node.data);
+            node = successor(node);
+        }
     }
 
-    private void inOrderRec(TreeNode<T> root, Consumer<T> action) {
-        if (root != null) {
-            inOrderRec(root.left, action);
-            action.accept(root.data);
-            inOrderRec(root.right, action);
-        }
-    }    /**
+    /**
      * Get all elements in the tree in in-order sequence
      */
     @SuppressWarnings("unchecked")
     public T[] toArray() {
         Object[] result = new Object[size];
-        
+
         // Use a wrapper class to track the current index in the array
         class IndexWrapper {
             int index = 0;
         }
-        
+
         IndexWrapper wrapper = new IndexWrapper();
-        
+
         // Use in-order traversal to fill the array
         inOrderTraversal(data -> {
             result[wrapper.index++] = data;
         });
-        
+
         return (T[]) result;
     }
 
@@ -112,7 +172,7 @@ public class BinarySearchTree<T extends Comparable<T>> {
      * Check if the tree is empty
      */
     public boolean isEmpty() {
-        return root == null;
+        return root == nil;
     }
 
     /**
@@ -121,4 +181,229 @@ public class BinarySearchTree<T extends Comparable<T>> {
     public int size() {
         return size;
     }
+
+    private TreeNode<T> findNode(T data) {
+        TreeNode<T> current = root;
+        while (current != nil) {
+            int compareResult = data.compareTo(current.data);
+            if (compareResult == 0) {
+                return current;
+            }
+            current = compareResult < 0 ? current.left : current.right;
+        }
+        return nil;
+    }
+
+    private TreeNode<T> ceilingNode(T data) {
+        TreeNode<T> current = root;
+        TreeNode<T> result = nil;
+        while (current != nil) {
+            int compareResult = data.compareTo(current.data);
+            if (compareResult == 0) {
+                return current;
+            }
+            if (compareResult > 0) {
+                current = current.right;
+            } else {
+                result = current;
+                current = current.left;
+            }
+        }
+        return result;
+    }
+
+    private TreeNode<T> minimum(TreeNode<T> node) {
+        while (node.left != nil) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private TreeNode<T> successor(TreeNode<T> node) {
+        if (node.right != nil) {
+            return minimum(node.right);
+        }
+        TreeNode<T> parent = node.parent;
+        while (parent != nil && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    private void rotateLeft(TreeNode<T> x) {
+        TreeNode<T> y = x.right;
+        x.right = y.left;
+        if (y.left != nil) {
+            y.left.parent = x;
+        }
+        y.parent = x.parent;
+        if (x.parent == nil) {
+            root = y;
+        } else if (x == x.parent.left) {
+            x.parent.left = y;
+        } else {
+            x.parent.right = y;
+        }
+        y.left = x;
+        x.parent = y;
+    }
+
+    private void rotateRight(TreeNode<T> x) {
+        TreeNode<T> y = x.left;
+        x.left = y.right;
+        if (y.right != nil) {
+            y.right.parent = x;
+        }
+        y.parent = x.parent;
+        if (x.parent == nil) {
+            root = y;
+        } else if (x == x.parent.right) {
+            x.parent.right = y;
+        } else {
+            x.parent.left = y;
+        }
+        y.right = x;
+        x.parent = y;
+    }
+
+    private void insertFixup(TreeNode<T> z) {
+        while (z.parent.color == RED) {
+            TreeNode<T> grandparent = z.parent.parent;
+            if (z.parent == grandparent.left) {
+                TreeNode<T> uncle = grandparent.right;
+                if (uncle.color == RED) {
+                    z.parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grandparent.color = RED;
+                    z = grandparent;
+                } else {
+                    if (z == z.parent.right) {
+                        z = z.parent;
+                        rotateLeft(z);
+                    }
+                    z.parent.color = BLACK;
+                    z.parent.parent.color = RED;
+                    rotateRight(z.parent.parent);
+                }
+            } else {
+                TreeNode<T> uncle = grandparent.left;
+                if (uncle.color == RED) {
+                    z.parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grandparent.color = RED;
+                    z = grandparent;
+                } else {
+                    if (z == z.parent.left) {
+                        z = z.parent;
+                        rotateRight(z);
+                    }
+                    z.parent.color = BLACK;
+                    z.parent.parent.color = RED;
+                    rotateLeft(z.parent.parent);
+                }
+            }
+        }
+        root.color = BLACK;
+    }
+
+    private void transplant(TreeNode<T> u, TreeNode<T> v) {
+        if (u.parent == nil) {
+            root = v;
+        } else if (u == u.parent.left) {
+            u.parent.left = v;
+        } else {
+            u.parent.right = v;
+        }
+        v.parent = u.parent;
+    }
+
+    private void deleteNode(TreeNode<T> z) {
+        TreeNode<T> y = z;
+        boolean originalColor = y.color;
+        TreeNode<T> x;
+
+        if (z.left == nil) {
+            x = z.right;
+            transplant(z, z.right);
+        } else if (z.right == nil) {
+            x = z.left;
+            transplant(z, z.left);
+        } else {
+            y = minimum(z.right);
+            originalColor = y.color;
+            x = y.right;
+            if (y.parent == z) {
+                x.parent = y;
+            } else {
+                transplant(y, y.right);
+                y.right = z.right;
+                y.right.parent = y;
+            }
+            transplant(z, y);
+            y.left = z.left;
+            y.left.parent = y;
+            y.color = z.color;
+        }
+
+        if (originalColor == BLACK) {
+            deleteFixup(x);
+        }
+        nil.parent = nil;
+    }
+
+    private void deleteFixup(TreeNode<T> x) {
+        while (x != root && x.color == BLACK) {
+            if (x == x.parent.left) {
+                TreeNode<T> w = x.parent.right;
+                if (w.color == RED) {
+                    w.color = BLACK;
+                    x.parent.color = RED;
+                    rotateLeft(x.parent);
+                    w = x.parent.right;
+                }
+                if (w.left.color == BLACK && w.right.color == BLACK) {
+                    w.color = RED;
+                    x = x.parent;
+                } else {
+                    if (w.right.color == BLACK) {
+                        w.left.color = BLACK;
+                        w.color = RED;
+                        rotateRight(w);
+                        w = x.parent.right;
+                    }
+                    w.color = x.parent.color;
+                    x.parent.color = BLACK;
+                    w.right.color = BLACK;
+                    rotateLeft(x.parent);
+                    x = root;
+                }
+            } else {
+                TreeNode<T> w = x.parent.left;
+                if (w.color == RED) {
+                    w.color = BLACK;
+                    x.parent.color = RED;
+                    rotateRight(x.parent);
+                    w = x.parent.left;
+                }
+                if (w.right.color == BLACK && w.left.color == BLACK) {
+                    w.color = RED;
+                    x = x.parent;
+                } else {
+                    if (w.left.color == BLACK) {
+                        w.right.color = BLACK;
+                        w.color = RED;
+                        rotateLeft(w);
+                        w = x.parent.left;
+                    }
+                    w.color = x.parent.color;
+                    x.parent.color = BLACK;
+                    w.left.color = BLACK;
+                    rotateRight(x.parent);
+                    x = root;
+                }
+            }
+        }
+        x.color = BLACK;
+    }
 }
@@ -0,0 +1,214 @@
+package datastructure;
+
+import java.util.function.Consumer;
+
+/**
+ * Binary min-heap keyed by a long priority. Every inserted element gets a Handle that
+ * remembers its position in the heap, so its key can be changed or the element removed
+ * in O(log n) without searching. Elements with equal keys come out in insertion order.
+ */
+public class IndexedMinHeap<T> {
+    /**
+     * Reference to an element in the heap, returned by insert
+     */
+    public static final class Handle<T> {
+        private long key;
+        private final long sequence;
+        private final T value;
+        private int index;  // Position in the heap array, -1 once removed
+
+        private Handle(long key, long sequence, T value) {
+            this.key = key;
+            this.sequence = sequence;
+            this.value = value;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public boolean isInHeap() {
+            return index >= 0;
+        }
+    }
+
+    private Handle<T>[] heap;
+    private int size;
+    private long nextSequence;
+
+    public IndexedMinHeap() {
+        this.heap = newArray(16);
+        this.size = 0;
+        this.nextSequence = 0;
+    }
+
+    /**
+     * Insert an element with the given key
+     */
+    public Handle<T> insert(long key, T value) {
+        if (size == heap.length) {
+            Handle<T>[] grown = newArray(heap.length << 1);
+            System.arraycopy(heap, 0, grown, 0, size);
+            heap = grown;
+        }
+        Handle<T> handle = new Handle<>(key, nextSequence++, value);
+        handle.index = size;
+        heap[size++] = handle;
+        siftUp(handle.index);
+        return handle;
+    }
+
+    /**
+     * Return the element with the smallest key without removing it, or null if the heap is empty
+     */
+    public T peek() {
+        return size == 0 ? null : heap[0].value;
+    }
+
+    /**
+     * Remove and return the element with the smallest key
+     */
+    public T poll() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+        T value = heap[0].value;
+        removeAt(0);
+        return value;
+    }
+
+    /**
+     * Lower the key of an element already in the heap
+     */
+    public void decreaseKey(Handle<T> handle, long newKey) {
+        checkHandle(handle);
+        if (newKey > handle.key) {
+            throw new IllegalArgumentException("New key is greater than the current key");
+        }
+        handle.key = newKey;
+        siftUp(handle.index);
+    }
+
+    /**
+     * Change the key of an element already in the heap, in either direction
+     */
+    public void updateKey(Handle<T> handle, long newKey) {
+        checkHandle(handle);
+        long oldKey = handle.key;
+        handle.key = newKey;
+        if (newKey < oldKey) {
+            siftUp(handle.index);
+        } else {
+            siftDown(handle.index);
+        }
+    }
+
+    /**
+     * Remove an element from the heap, returning false if it was already removed
+     */
+    public boolean remove(Handle<T> handle) {
+        if (handle == null || !contains(handle)) {
+            return false;
+        }
+        removeAt(handle.index);
+        return true;
+    }
+
+    /**
+     * Check if the handle refers to an element currently in this heap
+     */
+    public boolean contains(Handle<T> handle) {
+        return handle.index >= 0 && handle.index < size && heap[handle.index] == handle;
+    }
+
+    /**
+     * Perform the given action on every element, in heap (not sorted) order
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(heap[i].value);
+        }
+    }
+
+    /**
+     * Check if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of elements in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    private void removeAt(int index) {
+        Handle<T> removed = heap[index];
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            heap[index].index = index;
+            heap[size] = null;
+            siftDown(index);
+            siftUp(index);
+        } else {
+            heap[size] = null;
+        }
+        removed.index = -1;
+    }
+
+    private void siftUp(int index) {
+        Handle<T> handle = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!less(handle, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = handle;
+        handle.index = index;
+    }
+
+    private void siftDown(int index) {
+        Handle<T> handle = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], handle)) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = handle;
+        handle.index = index;
+    }
+
+    private void checkHandle(Handle<T> handle) {
+        if (!contains(handle)) {
+            throw new IllegalArgumentException("Handle is not in this heap");
+        }
+    }
+
+    private static <E> boolean less(Handle<E> a, Handle<E> b) {
+        return a.key < b.key || (a.key == b.key && a.sequence < b.sequence);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Handle<E>[] newArray(int capacity) {
+        return (Handle<E>[]) new Handle<?>[capacity];
+    }
+}
@@ -0,0 +1,248 @@
+package datastructure;
+
+import java.util.function.Consumer;
+
+/**
+ * Interval tree over half-open [start, end) ranges of long values, e.g. times in seconds.
+ * It is a balanced (AVL) search tree ordered by start, where each node also records the
+ * latest end in its subtree, so a search skips every subtree that ends before the query
+ * range begins. Finding an overlap costs O(log n); visiting all k overlaps costs
+ * O(log n + k).
+ *
+ * Each interval carries an integer ID that tells apart intervals with the same start and
+ * is used to remove it again.
+ */
+public class IntervalTree<V> {
+    private static final class Node<V> {
+        private final long start;
+        private final long end;
+        private final int id;
+        private final V value;
+        private long maxEnd;    // Latest end in this subtree
+        private int height;
+        private Node<V> left;
+        private Node<V> right;
+
+        private Node(long start, long end, int id, V value) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.value = value;
+            this.maxEnd = end;
+            this.height = 1;
+        }
+
+        boolean overlaps(long from, long to) {
+            return start < to && from < end;
+        }
+    }
+
+    private Node<V> root;
+    private int size;
+    private boolean changed;  // Set by insert and remove when the tree was modified
+
+    public IntervalTree() {
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Add an interval, returning false if one with the same start and ID is already stored
+     */
+    public boolean insert(long start, long end, int id, V value) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Empty interval: [" + start + ", " + end + ")");
+        }
+        changed = false;
+        root = insert(root, new Node<>(start, end, id, value));
+        if (changed) {
+            size++;
+        }
+        return changed;
+    }
+
+    /**
+     * Remove the interval with the given start and ID, returning false if there is none
+     */
+    public boolean remove(long start, int id) {
+        changed = false;
+        root = remove(root, start, id);
+        if (changed) {
+            size--;
+        }
+        return changed;
+    }
+
+    /**
+     * Check if any interval overlaps [from, to)
+     */
+    public boolean overlaps(long from, long to) {
+        return findOverlapping(from, to) != null;
+    }
+
+    /**
+     * Get the value of some interval overlapping [from, to), or null if there is none
+     */
+    public V findOverlapping(long from, long to) {
+        Node<V> node = root;
+        while (node != null) {
+            if (node.overlaps(from, to)) {
+                return node.value;
+            }
+            // If the left subtree reaches past from but holds no overlap, its interval ending
+            // last starts at or after to, and so does everything to the right of it
+            node = node.left != null && node.left.maxEnd > from ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Visit the values of the intervals overlapping [from, to) in order of start
+     */
+    public void forEachOverlapping(long from, long to, Consumer<? super V> action) {
+        forEachOverlapping(root, from, to, action);
+    }
+
+    /**
+     * Visit the values of all intervals in order of start
+     */
+    public void forEach(Consumer<? super V> action) {
+        forEachOverlapping(root, Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static <V> void forEachOverlapping(Node<V> node, long from, long to, Consumer<? super V> action) {
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        forEachOverlapping(node.left, from, to, action);
+        if (node.start >= to) {
+            return;  // The right subtree starts later still
+        }
+        if (node.overlaps(from, to)) {
+            action.accept(node.value);
+        }
+        forEachOverlapping(node.right, from, to, action);
+    }
+
+    private Node<V> insert(Node<V> node, Node<V> inserted) {
+        if (node == null) {
+            changed = true;
+            return inserted;
+        }
+        int cmp = compare(inserted.start, inserted.id, node);
+        if (cmp < 0) {
+            node.left = insert(node.left, inserted);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, inserted);
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    private Node<V> remove(Node<V> node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            changed = true;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Put the next interval in order in the removed node's place
+            Node<V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeFirst(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private Node<V> removeFirst(Node<V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeFirst(node.left);
+        return balance(node);
+    }
+
+    private static <V> int compare(long start, int id, Node<V> node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Integer.compare(id, node.id);
+    }
+
+    /**
+     * Refresh a node's height and latest end, then rotate if its subtrees' heights differ
+     * by more than one
+     */
+    private Node<V> balance(Node<V> node) {
+        update(node);
+        int skew = height(node.left) - height(node.right);
+        if (skew > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (skew < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<V> rotateRight(Node<V> node) {
+        Node<V> top = node.left;
+        node.left = top.right;
+        top.right = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    private Node<V> rotateLeft(Node<V> node) {
+        Node<V> top = node.right;
+        node.right = top.left;
+        top.left = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    private static <V> void update(Node<V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd > maxEnd) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd > maxEnd) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static <V> int height(Node<V> node) {
+        return node == null ? 0 : node.height;
+    }
+}
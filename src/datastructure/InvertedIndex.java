@@ -0,0 +1,298 @@
+package datastructure;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text inverted index from words to the IDs of the documents containing them. A
+ * document has up to eight text fields; each posting records which of them hold the word,
+ * so queries can be limited to some fields.
+ *
+ * Postings are stored compressed: each entry is the gap to the previous document ID as a
+ * variable-length integer (7 bits per byte), followed by one byte of field flags.
+ * Documents are expected in increasing ID order; an out-of-order ID costs a rewrite of the
+ * posting lists it touches.
+ */
+public class InvertedIndex {
+    public static final int ALL_FIELDS = 0xFF;
+    private static final int MAX_FIELDS = 8;
+
+    /**
+     * Compressed posting list in document ID order
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int length;
+        private int count;
+        private int lastId;
+
+        void append(int id, int fields) {
+            ensureCapacity(6);
+            int gap = count == 0 ? id : id - lastId;
+            while ((gap & ~0x7F) != 0) {
+                data[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+            data[length++] = (byte) fields;
+            lastId = id;
+            count++;
+        }
+
+        /**
+         * Decode the IDs of entries with any of the given fields into out, returning how many
+         * were written
+         */
+        int decode(int fieldMask, int[] out) {
+            int position = 0;
+            int id = 0;
+            int written = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += gap;
+                if ((data[position++] & fieldMask) != 0) {
+                    out[written++] = id;
+                }
+            }
+            return written;
+        }
+
+        /**
+         * Add an entry whose ID is not above the last one by re-encoding the list
+         */
+        void insert(int id, int fields) {
+            int[] ids = new int[count];
+            int[] flags = new int[count];
+            int position = 0;
+            int current = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += gap;
+                ids[i] = current;
+                flags[i] = data[position++] & 0xFF;
+            }
+
+            int previousCount = count;
+            length = 0;
+            count = 0;
+            boolean added = false;
+            for (int i = 0; i < previousCount; i++) {
+                if (!added && id <= ids[i]) {
+                    if (id == ids[i]) {
+                        flags[i] |= fields;
+                    } else {
+                        append(id, fields);
+                    }
+                    added = true;
+                }
+                append(ids[i], flags[i]);
+            }
+            if (!added) {
+                append(id, fields);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length << 1, length + extra));
+            }
+        }
+    }
+
+    private final HashMap<String, Postings> terms;
+    private int documentCount;
+
+    public InvertedIndex() {
+        this.terms = new HashMap<>();
+        this.documentCount = 0;
+    }
+
+    /**
+     * Index a document's fields; field i is matched by bit (1 << i) of a query's field mask
+     */
+    public void add(int documentId, String... fields) {
+        // Collect each word's fields first so the document gets one posting per word
+        HashMap<String, Integer> words = new HashMap<>();
+        for (int field = 0; field < fields.length && field < MAX_FIELDS; field++) {
+            int flag = 1 << field;
+            for (String word : tokenize(fields[field])) {
+                words.merge(word, flag, (a, b) -> a | b);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : words.entrySet()) {
+            Postings postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(entry.getKey(), postings);
+            }
+            if (postings.count == 0 || documentId > postings.lastId) {
+                postings.append(documentId, entry.getValue());
+            } else {
+                postings.insert(documentId, entry.getValue());
+            }
+        }
+        documentCount++;
+    }
+
+    /**
+     * Get the IDs of documents containing every word, in ID order. Words must be in the
+     * form tokenize produces.
+     */
+    public int[] searchAll(String[] words, int fieldMask) {
+        if (words.length == 0) {
+            return new int[0];
+        }
+        Postings[] lists = new Postings[words.length];
+        for (int i = 0; i < words.length; i++) {
+            lists[i] = terms.get(words[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        // Start from the rarest word so the running result stays small
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+        int[] result = decode(lists[0], fieldMask);
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, decode(lists[i], fieldMask));
+        }
+        return result;
+    }
+
+    /**
+     * Get the IDs of documents containing any of the words, in ID order. Words must be in
+     * the form tokenize produces.
+     */
+    public int[] searchAny(String[] words, int fieldMask) {
+        int[] result = new int[0];
+        for (String word : words) {
+            Postings postings = terms.get(word);
+            if (postings != null) {
+                result = union(result, decode(postings, fieldMask));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run a query of words joined by AND and OR, e.g. "fever cough OR rash". Adjacent
+     * words are ANDed; AND binds tighter than OR. The operators are not case-sensitive.
+     */
+    public int[] search(String query, int fieldMask) {
+        int[] result = new int[0];
+        for (String clause : query.split("(?i)\\s+OR\\s+")) {
+            String[] words = tokenize(clause.replaceAll("(?i)\\bAND\\b", " "));
+            if (words.length > 0) {
+                result = union(result, searchAll(words, fieldMask));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of distinct words indexed
+     */
+    public int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Get the number of documents indexed
+     */
+    public int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Split text into lower-case words of letters and digits, with accents removed
+     */
+    public static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) >= 128) {
+                lower = Normalizer.normalize(lower, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+                break;
+            }
+        }
+
+        LinkedList<String> words = new LinkedList<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        String[] result = new String[words.size()];
+        int index = 0;
+        for (String word : words) {
+            result[index++] = word;
+        }
+        return result;
+    }
+
+    private static int[] decode(Postings postings, int fieldMask) {
+        int[] ids = new int[postings.count];
+        int count = postings.decode(fieldMask, ids);
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -1,17 +1,25 @@
 package datastructure;
 
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
  * Generic implementation of a Singly Linked List
  */
-public class LinkedList<T> {
+public class LinkedList<T> implements Iterable<T> {
     private Node<T> head;
+    private Node<T> tail;   // Last node, so appends don't have to walk the list
     private int size;
+    private int modCount;   // Structural modification counter for fail-fast iteration
 
     public LinkedList() {
         this.head = null;
+        this.tail = null;
         this.size = 0;
+        this.modCount = 0;
     }
 
     /**
@@ -22,41 +30,50 @@ public class LinkedList<T> {
         if (head == null) {
             head = newNode;
         } else {
-            Node<T> current = head;
-            while (current.getNext() != null) {
-                current = current.getNext();
-            }
-            current.setNext(newNode);
+            tail.setNext(newNode);
         }
+        tail = newNode;
         size++;
+        modCount++;
     }
 
     /**
      * Remove the first occurrence of an element that matches the given predicate
      */
     public boolean remove(Predicate<T> predicate) {
-        if (head == null) {
-            return false;
-        }
-
-        if (predicate.test(head.getData())) {
-            head = head.getNext();
-            size--;
-            return true;
-        }
-
+        Node<T> previous = null;
         Node<T> current = head;
-        while (current.getNext() != null) {
-            if (predicate.test(current.getNext().getData())) {
-                current.setNext(current.getNext().getNext());
-                size--;
+        while (current != null) {
+            if (predicate.test(current.getData())) {
+                unlink(previous, current);
                 return true;
             }
+            previous = current;
             current = current.getNext();
         }
         return false;
     }
 
+    /**
+     * Remove every element that matches the given predicate in a single pass
+     */
+    public int removeIf(Predicate<T> predicate) {
+        int removed = 0;
+        Node<T> previous = null;
+        Node<T> current = head;
+        while (current != null) {
+            Node<T> next = current.getNext();
+            if (predicate.test(current.getData())) {
+                unlink(previous, current);
+                removed++;
+            } else {
+                previous = current;
+            }
+            current = next;
+        }
+        return removed;
+    }
+
     /**
      * Find the first element that matches the given predicate
      */
@@ -71,6 +88,32 @@ public class LinkedList<T> {
         return null;
     }
 
+    /**
+     * Perform the given action on every element, front to back
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        int expectedModCount = modCount;
+        Node<T> current = head;
+        while (current != null) {
+            action.accept(current.getData());
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            current = current.getNext();
+        }
+    }
+
+    /**
+     * Iterate over the elements front to back. The iterator is fail-fast: it throws
+     * ConcurrentModificationException if the list is structurally modified other than
+     * through the iterator's own remove method.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ListIterator();
+    }
+
     /**
      * Get all elements in the list
      */
@@ -99,4 +142,60 @@ public class LinkedList<T> {
     public int size() {
         return size;
     }
+
+    /**
+     * Unlink a node given its predecessor (null when the node is the head)
+     */
+    private void unlink(Node<T> previous, Node<T> node) {
+        if (previous == null) {
+            head = node.getNext();
+        } else {
+            previous.setNext(node.getNext());
+        }
+        if (node == tail) {
+            tail = previous;
+        }
+        size--;
+        modCount++;
+    }
+
+    private class ListIterator implements Iterator<T> {
+        private Node<T> previous;     // Node before lastReturned, null if lastReturned is the head
+        private Node<T> lastReturned;
+        private Node<T> next = head;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public T next() {
+            checkForComodification();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (lastReturned != null) {
+                previous = lastReturned;
+            }
+            lastReturned = next;
+            next = next.getNext();
+            return lastReturned.getData();
+        }
+
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            unlink(previous, lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
 }
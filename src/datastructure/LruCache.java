@@ -0,0 +1,136 @@
+package datastructure;
+
+/**
+ * Fixed-capacity cache from int keys to objects that evicts the least recently used entry.
+ * Entries are found through an IntObjectMap and kept in a doubly linked list ordered from
+ * most to least recently used, so get and put are O(1).
+ */
+public class LruCache<V> {
+    private static final class Entry<V> {
+        private final int key;
+        private V value;
+        private Entry<V> previous;
+        private Entry<V> next;
+
+        private Entry(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final IntObjectMap<Entry<V>> entries;
+    private final int capacity;
+    private Entry<V> head;  // Most recently used
+    private Entry<V> tail;  // Least recently used, evicted first
+
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.entries = new IntObjectMap<>(capacity + 1);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the value cached for the key and mark it as most recently used, or null if there is none
+     */
+    public V get(int key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        moveToFront(entry);
+        return entry.value;
+    }
+
+    /**
+     * Cache a value for the key, evicting the least recently used entry if the cache is full
+     */
+    public void put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LruCache does not accept null values");
+        }
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            moveToFront(entry);
+            return;
+        }
+        entry = new Entry<>(key, value);
+        entries.put(key, entry);
+        linkFirst(entry);
+        if (entries.size() > capacity) {
+            Entry<V> eldest = tail;
+            unlink(eldest);
+            entries.remove(eldest.key);
+        }
+    }
+
+    /**
+     * Remove the value cached for the key, returning it or null
+     */
+    public V remove(int key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        unlink(entry);
+        return entry.value;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        entries.clear();
+        head = null;
+        tail = null;
+    }
+
+    /**
+     * Get the number of cached entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the maximum number of entries kept
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    private void moveToFront(Entry<V> entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkFirst(entry);
+        }
+    }
+
+    private void linkFirst(Entry<V> entry) {
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        } else {
+            tail = entry;
+        }
+        head = entry;
+    }
+
+    private void unlink(Entry<V> entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else {
+            tail = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+}
@@ -1,17 +1,23 @@
 package datastructure;
 
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Generic implementation of a Queue (FIFO) using a linked list
  */
-public class Queue<T> {
+public class Queue<T> implements Iterable<T> {
     private Node<T> front;  // For dequeue operations
     private Node<T> rear;   // For enqueue operations
     private int size;
+    private int modCount;   // Structural modification counter for fail-fast iteration
 
     public Queue() {
         this.front = null;
         this.rear = null;
         this.size = 0;
+        this.modCount = 0;
     }
 
     /**
@@ -28,6 +34,7 @@ public class Queue<T> {
         
         rear = newNode;
         size++;
+        modCount++;
     }
 
     /**
@@ -46,6 +53,7 @@ public class Queue<T> {
         }
         
         size--;
+        modCount++;
         return data;
     }
 
@@ -73,6 +81,34 @@ public class Queue<T> {
         return size;
     }
 
+    /**
+     * Iterate over the elements from front to rear without removing them. The iterator
+     * is fail-fast if the queue is modified during iteration.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node<T> next = front;
+            private final int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T data = next.getData();
+                next = next.getNext();
+                return data;
+            }
+        };
+    }
+
     /**
      * Get all elements in the queue as an array (front to rear)
      */
@@ -0,0 +1,332 @@
+package datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Compact prefix tree (radix trie) from string keys to integer IDs, for autocomplete.
+ * Chains of single-child nodes are merged into one edge labelled with the whole substring,
+ * so a lookup walks at most one node per branching point of the prefix. Several IDs can
+ * share a key. Edge labels are ranges of the inserted key strings rather than copies.
+ *
+ * A prefix search stops after the requested number of IDs, so it costs time proportional
+ * to the prefix length plus the number of results, however many keys the trie holds.
+ */
+public class RadixTrie {
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private static final class Node {
+        private String source;      // A key passing through this node; the label is a range of it
+        private int labelStart;
+        private int labelEnd;
+        private char[] firstChars;  // First label character of each child, sorted
+        private Node[] children;
+        private int childCount;
+        private int[] ids;          // IDs stored under the key ending here, sorted
+        private int idCount;
+
+        private Node(String source, int labelStart, int labelEnd) {
+            this.source = source;
+            this.labelStart = labelStart;
+            this.labelEnd = labelEnd;
+            this.firstChars = NO_CHARS;
+            this.children = NO_CHILDREN;
+            this.ids = NO_IDS;
+        }
+
+        int labelLength() {
+            return labelEnd - labelStart;
+        }
+
+        char firstChar() {
+            return source.charAt(labelStart);
+        }
+
+        Node findChild(char c) {
+            int index = Arrays.binarySearch(firstChars, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node child) {
+            char c = child.firstChar();
+            int index = -Arrays.binarySearch(firstChars, 0, childCount, c) - 1;
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount << 1);
+                firstChars = Arrays.copyOf(firstChars, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(firstChars, index, firstChars, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            firstChars[index] = c;
+            children[index] = child;
+            childCount++;
+        }
+
+        void replaceChild(Node child) {
+            children[Arrays.binarySearch(firstChars, 0, childCount, child.firstChar())] = child;
+        }
+
+        void removeChild(Node child) {
+            int index = Arrays.binarySearch(firstChars, 0, childCount, child.firstChar());
+            System.arraycopy(firstChars, index + 1, firstChars, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        boolean addId(int id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(1, idCount << 1));
+            }
+            System.arraycopy(ids, index, ids, index + 1, idCount - index);
+            ids[index] = id;
+            idCount++;
+            return true;
+        }
+
+        boolean removeId(int id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, idCount - index - 1);
+            idCount--;
+            return true;
+        }
+
+        /**
+         * Absorb the only child into this node, joining the two edge labels. The child's key
+         * passes through this node too, so the joined label is the range just before the
+         * child's label in it.
+         */
+        void mergeWithChild() {
+            Node child = children[0];
+            int length = labelLength() + child.labelLength();
+            source = child.source;
+            labelEnd = child.labelEnd;
+            labelStart = labelEnd - length;
+            firstChars = child.firstChars;
+            children = child.children;
+            childCount = child.childCount;
+            ids = child.ids;
+            idCount = child.idCount;
+        }
+    }
+
+    private final Node root;
+    private int size;  // Number of key/ID pairs
+
+    public RadixTrie() {
+        this.root = new Node("", 0, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Store an ID under a key, returning false if it is already stored there
+     */
+    public boolean insert(String key, int id) {
+        return insert(key, 0, id);
+    }
+
+    /**
+     * Store an ID under the part of the key from start onwards
+     */
+    private boolean insert(String key, int start, int id) {
+        Node node = root;
+        int position = start;
+        while (position < key.length()) {
+            Node child = node.findChild(key.charAt(position));
+            if (child == null) {
+                Node leaf = new Node(key, position, key.length());
+                leaf.addId(id);
+                node.addChild(leaf);
+                size++;
+                return true;
+            }
+
+            int common = commonPrefixLength(child, key, position);
+            if (common < child.labelLength()) {
+                // The key leaves this edge part-way along, so split it
+                Node split = new Node(child.source, child.labelStart, child.labelStart + common);
+                child.labelStart += common;
+                split.addChild(child);
+                node.replaceChild(split);
+                child = split;
+            }
+            node = child;
+            position += common;
+        }
+        if (node.addId(id)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove an ID from a key, returning false if it was not stored there
+     */
+    public boolean remove(String key, int id) {
+        return remove(key, 0, id);
+    }
+
+    /**
+     * Remove an ID from the part of the key from start onwards
+     */
+    private boolean remove(String key, int start, int id) {
+        Node parent = null;
+        Node node = root;
+        int position = start;
+        while (position < key.length()) {
+            Node child = node.findChild(key.charAt(position));
+            if (child == null || commonPrefixLength(child, key, position) < child.labelLength()) {
+                return false;
+            }
+            parent = node;
+            node = child;
+            position += child.labelLength();
+        }
+        if (!node.removeId(id)) {
+            return false;
+        }
+        size--;
+
+        // Drop nodes that no longer lead anywhere and re-merge single-child chains
+        if (node != root && node.idCount == 0) {
+            if (node.childCount == 0) {
+                parent.removeChild(node);
+                if (parent != root && parent.idCount == 0 && parent.childCount == 1) {
+                    parent.mergeWithChild();
+                }
+            } else if (node.childCount == 1) {
+                node.mergeWithChild();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Index an ID under the start of every word in the text, so that a prefix of any word
+     * finds it. Words are separated by single spaces.
+     */
+    public void insertWords(String text, int id) {
+        int start = 0;
+        while (start < text.length()) {
+            insert(text, start, id);
+            int space = text.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+    }
+
+    /**
+     * Remove an ID indexed with insertWords
+     */
+    public void removeWords(String text, int id) {
+        int start = 0;
+        while (start < text.length()) {
+            remove(text, start, id);
+            int space = text.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+    }
+
+    /**
+     * Get up to limit IDs stored under keys starting with the prefix, in key order. Each ID
+     * is returned once even if it is stored under several matching keys.
+     */
+    public int[] prefixSearch(String prefix, int limit) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.findChild(prefix.charAt(position));
+            if (child == null) {
+                return new int[0];
+            }
+            int length = Math.min(child.labelLength(), prefix.length() - position);
+            if (commonPrefixLength(child, prefix, position) < length) {
+                return new int[0];
+            }
+            node = child;
+            position += length;
+        }
+
+        Results results = new Results(limit);
+        collect(node, results);
+        return Arrays.copyOf(results.ids, results.count);
+    }
+
+    /**
+     * Get the number of key/ID pairs stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * IDs gathered by a prefix search, without duplicates
+     */
+    private static final class Results {
+        private final int limit;
+        private final LongHashSet seen;
+        private int[] ids;
+        private int count;
+
+        private Results(int limit) {
+            this.limit = limit;
+            this.seen = new LongHashSet();
+            this.ids = new int[Math.min(limit, 16)];
+        }
+
+        boolean isFull() {
+            return count == limit;
+        }
+
+        void add(int id) {
+            if (!isFull() && seen.add(id)) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, (int) Math.min((long) count << 1, limit));
+                }
+                ids[count++] = id;
+            }
+        }
+    }
+
+    /**
+     * Add the node's IDs, then its children's in key order, until the results are full
+     */
+    private static void collect(Node node, Results results) {
+        for (int i = 0; i < node.idCount && !results.isFull(); i++) {
+            results.add(node.ids[i]);
+        }
+        for (int i = 0; i < node.childCount && !results.isFull(); i++) {
+            collect(node.children[i], results);
+        }
+    }
+
+    /**
+     * Count how many characters of the node's label match the key from keyStart
+     */
+    private static int commonPrefixLength(Node node, String key, int keyStart) {
+        int max = Math.min(node.labelLength(), key.length() - keyStart);
+        int i = 0;
+        while (i < max && node.source.charAt(node.labelStart + i) == key.charAt(keyStart + i)) {
+            i++;
+        }
+        return i;
+    }
+}
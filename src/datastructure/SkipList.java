@@ -0,0 +1,192 @@
+package datastructure;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Skip list of values ordered by a long key, e.g. a timestamp. Each node is linked on a
+ * random number of levels, so finding a key skips over most of the list and costs
+ * O(log n) on average; a range query then walks only the nodes inside the range.
+ * Values with equal keys are kept in insertion order. Inserting at the end, as when values
+ * arrive in key order, skips the search. The head starts with a single level and grows as
+ * taller nodes arrive, so the many small lists of a per-key index stay small.
+ */
+public class SkipList<V> implements Iterable<V> {
+    private static final int MAX_LEVEL = 24;  // Ample for 4^24 values with 1-in-4 promotion
+
+    private static final class Node<V> {
+        private final long key;
+        private final V value;
+        private Node<V>[] next;  // Only the head's is ever replaced, to grow it
+
+        private Node(long key, V value, int level) {
+            this.key = key;
+            this.value = value;
+            this.next = newNodeArray(level);
+        }
+    }
+
+    private final Node<V> head;
+    private Node<V>[] tails;  // Last node linked on each of the head's levels, or head
+    private int level;      // Levels in use
+    private int size;
+    private int randomSeed; // Xorshift state for choosing node levels
+
+    public SkipList() {
+        this.head = new Node<>(Long.MIN_VALUE, null, 1);
+        this.tails = newNodeArray(1);
+        tails[0] = head;
+        this.level = 1;
+        this.size = 0;
+        this.randomSeed = 0x2545F491;
+    }
+
+    /**
+     * Insert a value under a key, after any values with the same key
+     */
+    public void insert(long key, V value) {
+        int nodeLevel = randomLevel();
+        if (nodeLevel > head.next.length) {
+            growHead(nodeLevel);
+        }
+
+        Node<V>[] update;
+        if (tails[0] == head || tails[0].key <= key) {
+            update = tails;
+        } else {
+            update = newNodeArray(head.next.length);
+            Node<V> node = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (node.next[i] != null && node.next[i].key <= key) {
+                    node = node.next[i];
+                }
+                update[i] = node;
+            }
+        }
+
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                update[i] = head;
+            }
+            level = nodeLevel;
+        }
+        Node<V> inserted = new Node<>(key, value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            inserted.next[i] = update[i].next[i];
+            update[i].next[i] = inserted;
+            if (inserted.next[i] == null) {
+                tails[i] = inserted;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Visit the values with fromKey <= key < toKey in key order
+     */
+    public void forEachInRange(long fromKey, long toKey, Consumer<? super V> action) {
+        for (Node<V> node = ceiling(fromKey); node != null && node.key < toKey; node = node.next[0]) {
+            action.accept(node.value);
+        }
+    }
+
+    /**
+     * Count the values with fromKey <= key < toKey
+     */
+    public int countInRange(long fromKey, long toKey) {
+        int count = 0;
+        for (Node<V> node = ceiling(fromKey); node != null && node.key < toKey; node = node.next[0]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Visit every value in key order
+     */
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        for (Node<V> node = head.next[0]; node != null; node = node.next[0]) {
+            action.accept(node.value);
+        }
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private Node<V> current = head.next[0];
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public V next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                V value = current.value;
+                current = current.next[0];
+                return value;
+            }
+        };
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the first node with a key no smaller than the given one
+     */
+    private Node<V> ceiling(long key) {
+        Node<V> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].key < key) {
+                node = node.next[i];
+            }
+        }
+        return node.next[0];
+    }
+
+    /**
+     * Give the head at least the given number of levels, doubling to keep regrowth rare
+     */
+    private void growHead(int minLevel) {
+        int oldLength = head.next.length;
+        int newLength = Math.min(MAX_LEVEL, Math.max(minLevel, oldLength * 2));
+        head.next = Arrays.copyOf(head.next, newLength);
+        tails = Arrays.copyOf(tails, newLength);
+        Arrays.fill(tails, oldLength, newLength, head);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newNodeArray(int length) {
+        return (Node<V>[]) new Node<?>[length];
+    }
+
+    /**
+     * Pick a level with probability 1/4 of each extra level
+     */
+    private int randomLevel() {
+        int x = randomSeed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomSeed = x;
+        // Two random bits per level: promote while both are zero
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && (x & 3) == 0) {
+            nodeLevel++;
+            x >>>= 2;
+        }
+        return nodeLevel;
+    }
+}
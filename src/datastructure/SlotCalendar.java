@@ -0,0 +1,114 @@
+package datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Booking calendar with one bit per time slot, up to 64 slots a day. Days are kept in a
+ * ring indexed by day number, each entry tagged with the day it holds, so a calendar
+ * covering a booking horizon of N days needs only N longs however long it lives.
+ * Booking, releasing and checking a slot are single bit operations.
+ *
+ * A booking on a day whose ring entry is still held by another day (more than the horizon
+ * apart) goes to a small overflow set instead, so it is never lost.
+ */
+public class SlotCalendar {
+    public static final int MAX_SLOTS_PER_DAY = 64;
+
+    private final long[] booked;    // Bit i set: slot i of the tagged day is taken
+    private final long[] dayTags;   // Day held by each ring entry
+    private final LongHashSet overflow;  // (day << 6 | slot) of bookings that didn't fit the ring
+    private int bookedCount;
+
+    /**
+     * Create a calendar for bookings spread over about the given number of days
+     */
+    public SlotCalendar(int horizonDays) {
+        this.booked = new long[Math.max(horizonDays, 1)];
+        this.dayTags = new long[booked.length];
+        Arrays.fill(dayTags, Long.MIN_VALUE);
+        this.overflow = new LongHashSet();
+        this.bookedCount = 0;
+    }
+
+    /**
+     * Check if a slot of a day is free
+     */
+    public boolean isFree(long day, int slot) {
+        return (getBookedSlots(day) & (1L << slot)) == 0;
+    }
+
+    /**
+     * Take a slot, returning false if it was already taken
+     */
+    public boolean book(long day, int slot) {
+        checkSlot(slot);
+        if (!isFree(day, slot)) {
+            return false;
+        }
+        int index = ringIndex(day);
+        if (dayTags[index] != day && booked[index] == 0) {
+            // Entry free or only holding an old, empty day: claim it
+            dayTags[index] = day;
+        }
+        if (dayTags[index] == day) {
+            booked[index] |= 1L << slot;
+        } else {
+            overflow.add(overflowKey(day, slot));
+        }
+        bookedCount++;
+        return true;
+    }
+
+    /**
+     * Free a slot, returning false if it was not taken
+     */
+    public boolean release(long day, int slot) {
+        checkSlot(slot);
+        int index = ringIndex(day);
+        long bit = 1L << slot;
+        if (dayTags[index] == day && (booked[index] & bit) != 0) {
+            booked[index] &= ~bit;
+        } else if (overflow.isEmpty() || !overflow.remove(overflowKey(day, slot))) {
+            return false;
+        }
+        bookedCount--;
+        return true;
+    }
+
+    /**
+     * Get the taken slots of a day as a bit mask, slot i in bit i
+     */
+    public long getBookedSlots(long day) {
+        int index = ringIndex(day);
+        long slots = dayTags[index] == day ? booked[index] : 0;
+        if (!overflow.isEmpty()) {
+            for (int slot = 0; slot < MAX_SLOTS_PER_DAY; slot++) {
+                if (overflow.contains(overflowKey(day, slot))) {
+                    slots |= 1L << slot;
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Get the number of taken slots across all days
+     */
+    public int getBookedCount() {
+        return bookedCount;
+    }
+
+    private int ringIndex(long day) {
+        return (int) Math.floorMod(day, (long) booked.length);
+    }
+
+    private static long overflowKey(long day, int slot) {
+        return (day << 6) | slot;
+    }
+
+    private static void checkSlot(int slot) {
+        if (slot < 0 || slot >= MAX_SLOTS_PER_DAY) {
+            throw new IllegalArgumentException("Slot out of range: " + slot);
+        }
+    }
+}
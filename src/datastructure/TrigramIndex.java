@@ -0,0 +1,303 @@
+package datastructure;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Inverted index from three-character substrings (trigrams) to the IDs of the texts that
+ * contain them, for substring search. A query's trigrams must all appear in a matching
+ * text, so intersecting their posting lists leaves a small candidate set that is then
+ * checked with a real substring test.
+ *
+ * Texts are normalised before indexing and searching: lower case, accents removed and
+ * runs of whitespace collapsed to one space.
+ */
+public class TrigramIndex {
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_WORD_START = 2;
+    private static final int RANK_SUBSTRING = 3;
+    private static final int MAX_RANKED_LENGTH = (1 << 20) - 1;
+
+    /**
+     * Sorted, growable list of document IDs
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Find the first position at or after from holding an ID no smaller than id,
+         * galloping ahead so that a run of increasing lookups costs about one merge pass
+         */
+        int advance(int from, int id) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && ids[high] < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids[mid] < id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void insertAt(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+
+    private static final class Document {
+        private final int id;
+        private final String text;  // Normalised
+
+        private Document(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private final IntObjectMap<Postings> postings;  // Trigram key -> IDs of documents containing it
+    private final IntObjectMap<Document> documents;
+
+    public TrigramIndex() {
+        this.postings = new IntObjectMap<>();
+        this.documents = new IntObjectMap<>();
+    }
+
+    /**
+     * Index a text under the given ID, replacing any text already indexed for it
+     */
+    public void add(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        documents.put(id, new Document(id, normalized));
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            int key = trigramKey(normalized, i);
+            Postings list = postings.get(key);
+            if (list == null) {
+                list = new Postings();
+                postings.put(key, list);
+            }
+            list.add(id);
+        }
+    }
+
+    /**
+     * Remove the text indexed for the given ID, returning false if there was none
+     */
+    public boolean remove(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return false;
+        }
+        String text = document.text;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            int key = trigramKey(text, i);
+            Postings list = postings.get(key);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(key);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the IDs of all texts containing the query, best matches first: exact matches,
+     * then texts starting with the query, then texts with a word starting with it, then any
+     * other match. Ties go to the shorter text, then the lower ID.
+     */
+    public int[] search(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return new int[0];
+        }
+
+        Matches matches = new Matches(normalized);
+        if (normalized.length() < 3) {
+            // Too short for a trigram, so check every text
+            documents.forEachValue(matches::check);
+        } else {
+            Postings[] lists = queryPostings(normalized);
+            if (lists == null) {
+                return new int[0];
+            }
+            Postings smallest = lists[0];
+            int[] cursors = new int[lists.length];
+            candidates:
+            for (int i = 0; i < smallest.size; i++) {
+                int id = smallest.ids[i];
+                for (int j = 1; j < lists.length; j++) {
+                    cursors[j] = lists[j].advance(cursors[j], id);
+                    if (cursors[j] == lists[j].size) {
+                        break candidates;
+                    }
+                    if (lists[j].ids[cursors[j]] != id) {
+                        continue candidates;
+                    }
+                }
+                // Trigram keys can collide and trigrams can appear out of order, so confirm
+                matches.check(documents.get(id));
+            }
+        }
+        return matches.sortedIds();
+    }
+
+    /**
+     * Get the number of indexed texts
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Lower-case the text, strip accents and collapse whitespace
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        boolean ascii = true;
+        for (int i = 0; i < lower.length() && ascii; i++) {
+            ascii = lower.charAt(i) < 128;
+        }
+        if (!ascii) {
+            lower = Normalizer.normalize(lower, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        }
+
+        StringBuilder result = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = result.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    result.append(' ');
+                    pendingSpace = false;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the posting lists of the query's trigrams, smallest first, or null if any trigram
+     * appears in no text
+     */
+    private Postings[] queryPostings(String query) {
+        Postings[] lists = new Postings[query.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(trigramKey(query, i));
+            if (lists[i] == null) {
+                return null;
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        // A repeated trigram gives the same list twice; keep one copy
+        int distinct = 1;
+        for (int i = 1; i < lists.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < distinct && !seen; j++) {
+                seen = lists[j] == lists[i];
+            }
+            if (!seen) {
+                lists[distinct++] = lists[i];
+            }
+        }
+        return Arrays.copyOf(lists, distinct);
+    }
+
+    /**
+     * Collects the documents that contain the query, each packed with its rank, text length
+     * and ID into one long so that sorting the keys sorts the matches
+     */
+    private static final class Matches {
+        private final String query;
+        private final String wordQuery;  // Query at the start of a later word
+        private long[] keys = new long[16];
+        private int count;
+
+        private Matches(String query) {
+            this.query = query;
+            this.wordQuery = " " + query;
+        }
+
+        void check(Document document) {
+            if (document == null) {
+                return;
+            }
+            String text = document.text;
+            int position = text.indexOf(query);
+            if (position < 0) {
+                return;
+            }
+            int rank;
+            if (position == 0) {
+                rank = text.length() == query.length() ? RANK_EXACT : RANK_PREFIX;
+            } else if (text.charAt(position - 1) == ' ' || text.indexOf(wordQuery, position) >= 0) {
+                rank = RANK_WORD_START;
+            } else {
+                rank = RANK_SUBSTRING;
+            }
+            long length = Math.min(text.length(), MAX_RANKED_LENGTH);
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count << 1);
+            }
+            keys[count++] = ((long) rank << 52) | (length << 32) | (document.id & 0xFFFFFFFFL);
+        }
+
+        int[] sortedIds() {
+            Arrays.sort(keys, 0, count);
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = (int) keys[i];
+            }
+            return ids;
+        }
+    }
+
+    private static int trigramKey(String text, int start) {
+        return (text.charAt(start) * 31 + text.charAt(start + 1)) * 31 + text.charAt(start + 2);
+    }
+}
@@ -7,10 +7,13 @@ import java.time.format.DateTimeFormatter;
  * Class representing an appointment in the clinic
  */
 public class Appointment {
+    public static final int DEFAULT_DURATION_MINUTES = 15;
+
     private int appointmentId;
     private int patientId;
     private int doctorId;
     private LocalDateTime appointmentTime;
+    private int durationMinutes;
     private boolean completed;
     private String complaint;      // Patient's complaint/symptoms
     private String diagnosis;      // Doctor's diagnosis
@@ -19,10 +22,16 @@ public class Appointment {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public Appointment(int appointmentId, int patientId, int doctorId, LocalDateTime appointmentTime) {
+        this(appointmentId, patientId, doctorId, appointmentTime, DEFAULT_DURATION_MINUTES);
+    }
+
+    public Appointment(int appointmentId, int patientId, int doctorId, LocalDateTime appointmentTime,
+                      int durationMinutes) {
         this.appointmentId = appointmentId;
         this.patientId = patientId;
         this.doctorId = doctorId;
         this.appointmentTime = appointmentTime;
+        this.durationMinutes = durationMinutes;
         this.completed = false;
         this.complaint = "";
         this.diagnosis = "";
@@ -35,6 +44,7 @@ public class Appointment {
         this.patientId = patientId;
         this.doctorId = doctorId;
         this.appointmentTime = appointmentTime;
+        this.durationMinutes = DEFAULT_DURATION_MINUTES;
         this.completed = false;
         this.complaint = complaint;
         this.diagnosis = diagnosis;
@@ -73,6 +83,18 @@ public class Appointment {
         this.appointmentTime = appointmentTime;
     }
 
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public void setDurationMinutes(int durationMinutes) {
+        this.durationMinutes = durationMinutes;
+    }
+
+    public LocalDateTime getEndTime() {
+        return appointmentTime.plusMinutes(durationMinutes);
+    }
+
     public boolean isCompleted() {
         return completed;
     }    public void setCompleted(boolean completed) {
@@ -108,6 +130,7 @@ public class Appointment {
           .append(", Patient ID: ").append(patientId)
           .append(", Doctor ID: ").append(doctorId)
           .append(", Time: ").append(appointmentTime.format(FORMATTER))
+          .append(" - ").append(getEndTime().toLocalTime())
           .append(", Status: ").append(status);
         
         if (completed && !diagnosis.isEmpty()) {
@@ -125,7 +148,7 @@ public class Appointment {
     public String toFileString() {
         return appointmentId + "," + patientId + "," + doctorId + "," + 
                appointmentTime.toString() + "," + completed + "," + 
-               escapeCommas(complaint) + "," + escapeCommas(diagnosis) + "," + escapeCommas(medication);
+               escapeCommas(complaint) + "," + escapeCommas(diagnosis) + "," + escapeCommas(medication) + "," + durationMinutes;
     }
     
     /**
@@ -98,10 +98,10 @@ public class Diagnosis {
         StringBuilder sb = new StringBuilder();
         sb.append("Diagnosis ID: ").append(diagnosisId)
           .append(", Appointment ID: ").append(appointmentId)
-          .append(", Date: ").append(diagnosisTime.format(FORMATTER))
-          .append("\nComplaint: ").append(complaint)
-          .append("\nDiagnosis: ").append(diagnosis)
-          .append("\nMedication: ").append(medication);
+          .append(", Date: ").append(getDiagnosisTime().format(FORMATTER))
+          .append("\nComplaint: ").append(getComplaint())
+          .append("\nDiagnosis: ").append(getDiagnosis())
+          .append("\nMedication: ").append(getMedication());
         
         return sb.toString();
     }
@@ -111,8 +111,8 @@ public class Diagnosis {
      */
     public String toFileString() {
         return diagnosisId + "," + appointmentId + "," + patientId + "," + doctorId + "," + 
-               diagnosisTime.toString() + "," + escapeCommas(complaint) + "," + 
-               escapeCommas(diagnosis) + "," + escapeCommas(medication);
+               getDiagnosisTime().toString() + "," + escapeCommas(getComplaint()) + "," + 
+               escapeCommas(getDiagnosis()) + "," + escapeCommas(getMedication());
     }
     
     /**
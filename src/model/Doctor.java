@@ -7,7 +7,7 @@ import java.time.LocalDateTime;
  */
 public class Doctor extends User {
     private String specialty;
-    private LocalDateTime loginTime;
+    private LocalDateTime loginTime;  // Set while the doctor has an open session; not saved to file
 
     public Doctor(int id, String name, String specialty, String username, String password) {
         super(id, name, username, password);
@@ -50,7 +50,6 @@ public class Doctor extends User {
      * Convert doctor to a string format for saving to file
      */
     public String toFileString() {
-        String loginTimeStr = loginTime != null ? loginTime.toString() : "null";
-        return getId() + "," + getName() + "," + specialty + "," + loginTimeStr + "," + getUsername() + "," + getPassword();
+        return getId() + "," + getName() + "," + specialty + "," + getUsername() + "," + getPassword();
     }
 }
@@ -0,0 +1,42 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Class representing a free appointment slot of a doctor
+ */
+public class TimeSlot {
+    private final int doctorId;
+    private final LocalDateTime startTime;
+    private final int durationMinutes;
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public TimeSlot(int doctorId, LocalDateTime startTime, int durationMinutes) {
+        this.doctorId = doctorId;
+        this.startTime = startTime;
+        this.durationMinutes = durationMinutes;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public LocalDateTime getEndTime() {
+        return startTime.plusMinutes(durationMinutes);
+    }
+
+    @Override
+    public String toString() {
+        return startTime.format(FORMATTER) + " - " + getEndTime().toLocalTime() + ", Doctor ID: " + doctorId;
+    }
+}
@@ -1,5 +1,6 @@
 package service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import model.Admin;
@@ -7,11 +8,15 @@ import model.Appointment;
 import model.Doctor;
 import model.Patient;
 import util.InputUtil;
+import util.Page;
 
 /**
  * Menu controller for admin users
  */
 public class AdminMenuController extends MenuController {
+    private static final int SEARCH_PAGE_SIZE = 10;
+    private static final int SUGGESTION_LIMIT = 10;
+    
     private Admin currentAdmin;
     
     public AdminMenuController(Admin admin, AdminService adminService, DoctorService doctorService, 
@@ -120,6 +125,8 @@ public class AdminMenuController extends MenuController {
             "Schedule New Appointment",
             "Process Next Appointment",
             "View All Upcoming Appointments",
+            "Reschedule Appointment",
+            "Cancel Appointment",
             "Back to Main Menu"
         };
         
@@ -136,6 +143,12 @@ public class AdminMenuController extends MenuController {
                 viewUpcomingAppointments();
                 break;
             case 4:
+                rescheduleAppointment();
+                break;
+            case 5:
+                cancelAppointment();
+                break;
+            case 6:
                 return;
         }
     }
@@ -169,11 +182,26 @@ public class AdminMenuController extends MenuController {
         System.out.println("\n--- Find Patient by Name ---");
         String name = InputUtil.getRequiredString("Enter patient name (or part of name)");
         
-        Patient patient = patientService.findPatientByName(name);
-        if (patient != null) {
-            System.out.println("Found patient: " + patient);
-        } else {
-            System.out.println("No patient found with name containing: " + name);
+        // Search once and page over the ranked matches
+        Patient[] matches = patientService.searchPatientsByName(name);
+        int pageNumber = 0;
+        while (true) {
+            Page<Patient> page = Page.of(matches, pageNumber, SEARCH_PAGE_SIZE);
+            if (page.getTotalCount() == 0) {
+                System.out.println("No patient found with name containing: " + name);
+                return;
+            }
+            
+            System.out.println("Found " + page.getTotalCount() + " patient(s), page "
+                    + (pageNumber + 1) + " of " + page.getTotalPages() + ":");
+            for (Patient patient : page.getItems()) {
+                System.out.println(patient);
+            }
+            
+            if (!page.hasNextPage() || !InputUtil.getYesNo("Show next page?")) {
+                return;
+            }
+            pageNumber++;
         }
     }
     
@@ -233,14 +261,22 @@ public class AdminMenuController extends MenuController {
     private void scheduleAppointment() {
         System.out.println("\n--- Schedule New Appointment ---");
         
-        // Display available patients
-        Patient[] patients = patientService.getAllPatients();
-        if (patients.length == 0) {
-            System.out.println("No patients in the system. Please add a patient first.");
-            return;
+        // Suggest patients by the start of their name rather than listing everyone
+        Patient[] patients;
+        while (true) {
+            String prefix = InputUtil.getString("Enter the start of the patient's name (blank to list)");
+            patients = patientService.prefixSearchByName(prefix, SUGGESTION_LIMIT);
+            if (patients.length > 0) {
+                break;
+            }
+            if (prefix.isEmpty()) {
+                System.out.println("No patients in the system. Please add a patient first.");
+                return;
+            }
+            System.out.println("No patient name starts with: " + prefix);
         }
         
-        System.out.println("Available Patients:");
+        System.out.println("Matching Patients:");
         for (Patient patient : patients) {
             System.out.println(patient.getId() + ": " + patient.getName());
         }
@@ -259,31 +295,31 @@ public class AdminMenuController extends MenuController {
         }
         int doctorId = InputUtil.getInt("Enter doctor ID");
         
-        // Get appointment time
+        // Get appointment time and length
         LocalDateTime appointmentTime = InputUtil.getDateTime("Enter appointment date", "Enter appointment time");
+        int duration = getAppointmentDuration();
         
-        Appointment appointment = appointmentService.scheduleAppointment(patientId, doctorId, appointmentTime);
+        Appointment appointment = appointmentService.scheduleAppointment(patientId, doctorId, appointmentTime, duration);
         if (appointment != null) {
             System.out.println("Appointment scheduled successfully with ID: " + appointment.getAppointmentId());
         } else {
             System.out.println("Failed to schedule appointment. Please check the following:");
             System.out.println("- Appointment time must be between 7:00 and 22:00");
             System.out.println("- Appointment must be within one year from now");
-            System.out.println("- Doctor and patient must not have another appointment at the same time");
+            System.out.println("- Doctor and patient must not have another appointment overlapping that time");
         }
     }
       private void processNextAppointment() {
         System.out.println("\n--- Process Next Appointment ---");
         
         // Check if there are appointments to process
-        Appointment[] appointments = appointmentService.viewUpcomingAppointments();
-        if (appointments.length == 0) {
+        Appointment nextAppointment = appointmentService.peekNextAppointment();
+        if (nextAppointment == null) {
             System.out.println("No appointments in the queue.");
             return;
         }
         
         // Show the next appointment to be processed
-        Appointment nextAppointment = appointments[0];
         Patient patient = patientService.findPatientById(nextAppointment.getPatientId());
         Doctor doctor = doctorService.findDoctorById(nextAppointment.getDoctorId());
         
@@ -321,6 +357,39 @@ public class AdminMenuController extends MenuController {
         }
     }
     
+    private void rescheduleAppointment() {
+        System.out.println("\n--- Reschedule Appointment ---");
+        int appointmentId = InputUtil.getInt("Enter appointment ID to reschedule");
+        
+        Appointment appointment = appointmentService.getAppointmentById(appointmentId);
+        if (appointment == null) {
+            System.out.println("No upcoming appointment found with ID: " + appointmentId);
+            return;
+        }
+        System.out.println("Current appointment: " + appointment);
+        
+        LocalDateTime newTime = InputUtil.getDateTime("Enter new appointment date", "Enter new appointment time");
+        if (appointmentService.rescheduleAppointment(appointmentId, newTime) != null) {
+            System.out.println("Appointment rescheduled successfully.");
+        } else {
+            System.out.println("Failed to reschedule appointment. Please check the following:");
+            System.out.println("- Appointment time must be between 7:00 and 22:00");
+            System.out.println("- Appointment must be within one year from now");
+            System.out.println("- Doctor and patient must not have another appointment overlapping that time");
+        }
+    }
+    
+    private void cancelAppointment() {
+        System.out.println("\n--- Cancel Appointment ---");
+        int appointmentId = InputUtil.getInt("Enter appointment ID to cancel");
+        
+        if (appointmentService.cancelAppointment(appointmentId)) {
+            System.out.println("Appointment cancelled successfully.");
+        } else {
+            System.out.println("No upcoming appointment found with ID: " + appointmentId);
+        }
+    }
+    
     private void viewUpcomingAppointments() {
         System.out.println("\n--- Upcoming Appointments ---");
         Appointment[] appointments = appointmentService.viewUpcomingAppointments();
@@ -359,6 +428,8 @@ public class AdminMenuController extends MenuController {
             "View All Medical Records",
             "View Medical Records by Patient",
             "View Medical Records by Doctor",
+            "View Medical Records by Date Range",
+            "Search Medical Records",
             "Back to Main Menu"
         };
         
@@ -375,6 +446,12 @@ public class AdminMenuController extends MenuController {
                 viewMedicalRecordsByDoctor();
                 break;
             case 4:
+                viewMedicalRecordsByDateRange();
+                break;
+            case 5:
+                searchMedicalRecords();
+                break;
+            case 6:
                 return;
         }
     }
@@ -473,6 +550,69 @@ public class AdminMenuController extends MenuController {
         displayMedicalRecords(records);
     }
     
+    /**
+     * View medical records made between two dates, both inclusive
+     */
+    private void viewMedicalRecordsByDateRange() {
+        System.out.println("\n--- Medical Records by Date Range ---");
+        LocalDate from = InputUtil.getDate("Enter start date");
+        LocalDate to = InputUtil.getDate("Enter end date");
+        if (to.isBefore(from)) {
+            System.out.println("End date must not be before start date.");
+            return;
+        }
+        
+        model.Diagnosis[] records = diagnosisService.getDiagnosisBetween(from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+        if (records.length == 0) {
+            System.out.println("No medical records found between " + from + " and " + to + ".");
+            return;
+        }
+        
+        System.out.println("\nMedical Records from " + from + " to " + to + ":");
+        displayMedicalRecords(records);
+    }
+    
+    /**
+     * Search medical records for words in the complaint, diagnosis or medication
+     */
+    private void searchMedicalRecords() {
+        System.out.println("\n--- Search Medical Records ---");
+        System.out.println("Separate words to find records with all of them; use OR for alternatives (e.g. fever cough OR rash).");
+        String query = InputUtil.getRequiredString("Enter search words");
+        int fieldMask = getSearchFields();
+        
+        model.Diagnosis[] records = diagnosisService.searchDiagnosis(query, fieldMask);
+        if (records.length == 0) {
+            System.out.println("No medical records match: " + query);
+            return;
+        }
+        
+        displayMedicalRecords(records);
+    }
+    
+    /**
+     * Ask which diagnosis fields a search should look in
+     */
+    private int getSearchFields() {
+        String[] options = {
+            "All Fields",
+            "Complaint",
+            "Diagnosis",
+            "Medication"
+        };
+        
+        switch (InputUtil.getMenuChoice("Search in:", options)) {
+            case 2:
+                return DiagnosisService.FIELD_COMPLAINT;
+            case 3:
+                return DiagnosisService.FIELD_DIAGNOSIS;
+            case 4:
+                return DiagnosisService.FIELD_MEDICATION;
+            default:
+                return DiagnosisService.ALL_FIELDS;
+        }
+    }
+    
     /**
      * Helper method to display medical records
      */
@@ -1,24 +1,34 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
 
+import datastructure.IntObjectMap;
 import datastructure.LinkedList;
 import model.Admin;
+import service.AuthService.Role;
+import util.DataFileReader;
+import util.PersistencePipeline;
+import util.RecordTokenizer;
 
 /**
  * Service class for managing admin users
  */
 public class AdminService {
     private LinkedList<Admin> admins;
+    private IntObjectMap<Admin> adminsById;  // Primary-key index
+    private CredentialIndex credentials;     // Username index shared with the other services, once set
+    private CompletableFuture<Void> lastSave;  // Write of the most recent change
     private int nextId;
     private static final String ADMIN_FILE = "data/Admin.txt";
 
     public AdminService() {
         this.admins = new LinkedList<>();
+        this.adminsById = new IntObjectMap<>();
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
         loadAdminsFromFile();
         
@@ -34,14 +44,47 @@ public class AdminService {
     public Admin addAdmin(String name, String username, String password) {
         Admin admin = new Admin(nextId++, name, username, password);
         admins.add(admin);
+        adminsById.put(admin.getId(), admin);
+        if (credentials != null) {
+            credentials.add(username, Role.ADMIN, admin.getId());
+        }
         saveAdmins();
         return admin;
     }
 
+    /**
+     * Get the save of the most recently added admin, completing once Admin.txt is written
+     * or exceptionally if the write failed
+     */
+    public CompletableFuture<Void> getLastSave() {
+        return lastSave;
+    }
+
+    /**
+     * Register all admins in the shared credential index and keep it up to date from now on
+     */
+    public void setCredentialIndex(CredentialIndex credentials) {
+        this.credentials = credentials;
+        for (Admin admin : admins) {
+            credentials.add(admin.getUsername(), Role.ADMIN, admin.getId());
+        }
+    }
+
+    /**
+     * Find an admin by ID
+     */
+    public Admin findAdminById(int id) {
+        return adminsById.get(id);
+    }
+
     /**
      * Find an admin by username
      */
     public Admin findAdminByUsername(String username) {
+        if (credentials != null) {
+            int id = credentials.findUserId(username, Role.ADMIN);
+            return id >= 0 ? adminsById.get(id) : null;
+        }
         return admins.find(admin -> admin.getUsername().equals(username));
     }
 
@@ -57,23 +100,23 @@ public class AdminService {
     }
 
     /**
-     * Load admins from file
+     * Load admins from file. Throws UncheckedIOException if the file exists but cannot be read.
      */
     private void loadAdminsFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(ADMIN_FILE))) {
+        try (DataFileReader reader = new DataFileReader(ADMIN_FILE)) {
+            RecordTokenizer tokenizer = new RecordTokenizer();
             String line;
             int maxId = 0;
             
             while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    String username = parts[2];
-                    String password = parts[3];
-                    
+                int id = tokenizer.reset(line).nextInt();
+                String name = tokenizer.nextString();
+                String username = tokenizer.nextString();
+                String password = tokenizer.nextString();
+                if (!tokenizer.hasMissingFields()) {
                     Admin admin = new Admin(id, name, username, password);
                     admins.add(admin);
+                    adminsById.put(id, admin);
                     
                     if (id > maxId) {
                         maxId = id;
@@ -82,24 +125,28 @@ public class AdminService {
             }
             
             nextId = maxId + 1;
-        } catch (IOException e) {
+        } catch (NoSuchFileException e) {
             // File might not exist yet, which is fine
             System.out.println("Admin file not found. Creating default admin.");
+        } catch (IOException e) {
+            // Going on with part of the file would overwrite the rest on the next save
+            throw new UncheckedIOException("Cannot read " + ADMIN_FILE + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
         }
     }    /**
      * Save admins to file
      */
     private void saveAdmins() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(ADMIN_FILE))) {
-            Object[] objArray = admins.toArray();
-            for (Object obj : objArray) {
-                Admin admin = (Admin) obj;
-                writer.write(admin.getId() + "," + admin.getName() + "," + 
-                             admin.getUsername() + "," + admin.getPassword());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving admins: " + e.getMessage());
+        Admin[] snapshot = new Admin[admins.size()];
+        int index = 0;
+        for (Admin admin : admins) {
+            snapshot[index++] = admin;
         }
+        lastSave = PersistencePipeline.getInstance().replace(new File(ADMIN_FILE), snapshot, admin ->
+                admin.getId() + "," + admin.getName() + "," + admin.getUsername() + "," + admin.getPassword());
+        lastSave.exceptionally(e -> {
+            System.err.println("Error saving admins: " + e.getMessage());
+            return null;
+        });
     }
 }
@@ -1,63 +1,313 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
 
-import datastructure.Queue;
+import datastructure.IndexedMinHeap;
+import datastructure.IntObjectMap;
+import datastructure.IntervalTree;
+import datastructure.SlotCalendar;
 import model.Appointment;
+import model.Doctor;
+import model.TimeSlot;
+import util.OperationLog;
+import util.RecordTokenizer;
 
 /**
- * Service class for managing appointments using a Queue
+ * Service class for managing appointments using priority queues ordered by appointment time
  */
 public class AppointmentService {
-    private Queue<Appointment> appointmentQueue;
+    private IndexedMinHeap<Appointment> appointmentQueue;                 // All pending appointments, earliest first
+    private IntObjectMap<IndexedMinHeap<Appointment>> doctorQueues;       // Pending appointments of each doctor, earliest first
+    private IntObjectMap<PendingAppointment> appointmentsById;            // Primary-key index over pending appointments
+    private IntObjectMap<IntervalTree<Appointment>> doctorIntervals;   // Time ranges of each doctor's pending appointments
+    private IntObjectMap<IntervalTree<Appointment>> patientIntervals;  // Time ranges of each patient's pending appointments
+    private IntObjectMap<SlotCalendar> doctorCalendars;  // Slots overlapped by each doctor's pending appointments
     private DiagnosisService diagnosisService;
+    private DoctorService doctorService;  // For assigning doctors by specialty, once set
+    private RecordTokenizer tokenizer;    // Reused for every record read from disk
+    private OperationLog appointmentLog;  // Appended on every change and replayed over APPOINTMENT_FILE at startup
+    private CompletableFuture<Void> lastSave;  // Write of the most recent change
     private int nextId;
     private static final String APPOINTMENT_FILE = "data/Appointment.txt";
+    private static final String APPOINTMENT_LOG = "data/Appointment.log";
+    private static final String OP_CREATE = "CREATE";
+    private static final String OP_UPDATE = "UPDATE";
+    private static final String OP_COMPLETE = "COMPLETE";
+    private static final String OP_CANCEL = "CANCEL";
+    private static final LocalTime OPENING_TIME = LocalTime.of(7, 0);
+    private static final LocalTime CLOSING_TIME = LocalTime.of(22, 0);  // Latest start time
+    private static final int SLOT_MINUTES = 15;
+    private static final int MAX_DURATION_MINUTES = 4 * 60;
+    private static final int NO_PATIENT = -1;  // Slot search not made for any patient
+    private static final int SLOTS_PER_DAY = slotOf(CLOSING_TIME) + 1;
+    private static final long ALL_SLOTS = (1L << SLOTS_PER_DAY) - 1;
+    private static final int CALENDAR_DAYS = 400;  // One-year booking window plus slack for overdue appointments
+    private static final Comparator<Appointment> BY_TIME = Comparator
+            .comparing(Appointment::getAppointmentTime)
+            .thenComparingInt(Appointment::getAppointmentId);
+
+    /**
+     * A pending appointment together with its handles in the global and the doctor's queue
+     */
+    private static class PendingAppointment {
+        private final Appointment appointment;
+        private IndexedMinHeap.Handle<Appointment> queueHandle;
+        private IndexedMinHeap.Handle<Appointment> doctorQueueHandle;
+
+        public PendingAppointment(Appointment appointment) {
+            this.appointment = appointment;
+        }
+    }
 
     public AppointmentService(DiagnosisService diagnosisService) {
-        this.appointmentQueue = new Queue<>();
+        this.appointmentQueue = new IndexedMinHeap<>();
+        this.doctorQueues = new IntObjectMap<>();
+        this.appointmentsById = new IntObjectMap<>();
+        this.doctorIntervals = new IntObjectMap<>();
+        this.patientIntervals = new IntObjectMap<>();
+        this.doctorCalendars = new IntObjectMap<>();
         this.diagnosisService = diagnosisService;
+        this.tokenizer = new RecordTokenizer();
+        this.appointmentLog = new OperationLog(APPOINTMENT_FILE, APPOINTMENT_LOG);
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
         loadAppointmentsFromFile();
     }
 
     public AppointmentService() {
-        this.appointmentQueue = new Queue<>();
+        this.appointmentQueue = new IndexedMinHeap<>();
+        this.doctorQueues = new IntObjectMap<>();
+        this.appointmentsById = new IntObjectMap<>();
+        this.doctorIntervals = new IntObjectMap<>();
+        this.patientIntervals = new IntObjectMap<>();
+        this.doctorCalendars = new IntObjectMap<>();
+        this.tokenizer = new RecordTokenizer();
+        this.appointmentLog = new OperationLog(APPOINTMENT_FILE, APPOINTMENT_LOG);
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
         loadAppointmentsFromFile();
     }
     
+    /**
+     * Get the log write of the most recent appointment change. Log entries are written in
+     * order, so once it completes every earlier change is on disk too; it completes
+     * exceptionally if the write failed.
+     */
+    public CompletableFuture<Void> getLastSave() {
+        return lastSave;
+    }
+
     public void setDiagnosisService(DiagnosisService diagnosisService) {
         this.diagnosisService = diagnosisService;
     }
 
+    public void setDoctorService(DoctorService doctorService) {
+        this.doctorService = doctorService;
+    }
+
     /**
-     * Schedule a new appointment
+     * Schedule a new appointment of the default length
      */
     public Appointment scheduleAppointment(int patientId, int doctorId, LocalDateTime appointmentTime) {
+        return scheduleAppointment(patientId, doctorId, appointmentTime, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Schedule a new appointment lasting the given number of minutes. Returns null if the time
+     * or length is invalid, or the doctor or patient has another appointment overlapping it.
+     */
+    public Appointment scheduleAppointment(int patientId, int doctorId, LocalDateTime appointmentTime,
+                                           int durationMinutes) {
         // Validate appointment time
-        if (!isValidAppointmentTime(appointmentTime)) {
+        if (!isValidAppointmentTime(appointmentTime, durationMinutes)) {
             return null;
         }
 
         // Check for conflicts
-        if (hasTimeConflict(doctorId, appointmentTime) || hasTimeConflict(patientId, appointmentTime, true)) {
+        if (hasTimeConflict(doctorId, appointmentTime, durationMinutes)
+                || hasTimeConflict(patientId, appointmentTime, durationMinutes, true)) {
+            return null;
+        }
+
+        Appointment appointment = new Appointment(nextId++, patientId, doctorId, appointmentTime, durationMinutes);
+        enqueuePending(appointment);
+        logOperation(OP_CREATE, appointment.toFileString());
+        return appointment;
+    }
+
+    /**
+     * Schedule a new appointment of the default length with the least busy doctor of a
+     * specialty who is free at that time
+     */
+    public Appointment scheduleAppointmentBySpecialty(int patientId, String specialty, LocalDateTime appointmentTime) {
+        return scheduleAppointmentBySpecialty(patientId, specialty, appointmentTime, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Schedule a new appointment with the least busy doctor of a specialty who is free for
+     * its whole length. Returns null if the time or length is invalid, the patient is already
+     * booked then, or no doctor of the specialty is free.
+     */
+    public Appointment scheduleAppointmentBySpecialty(int patientId, String specialty, LocalDateTime appointmentTime,
+                                                      int durationMinutes) {
+        if (!isValidAppointmentTime(appointmentTime, durationMinutes)
+                || hasTimeConflict(patientId, appointmentTime, durationMinutes, true)) {
+            return null;
+        }
+        Doctor doctor = findLeastLoadedDoctor(specialty, appointmentTime, durationMinutes);
+        return doctor != null ? scheduleAppointment(patientId, doctor.getId(), appointmentTime, durationMinutes) : null;
+    }
+
+    /**
+     * Find the least busy doctor of a specialty who is free for a default-length appointment
+     * at the given time
+     */
+    public Doctor findLeastLoadedDoctor(String specialty, LocalDateTime time) {
+        return findLeastLoadedDoctor(specialty, time, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Find the doctor of a specialty with the fewest pending appointments who is free for the
+     * given number of minutes from the given time. Doctors on duty are preferred; if none of
+     * them is free, any doctor of the specialty may be chosen. Returns null if no doctor of
+     * the specialty is free.
+     */
+    public Doctor findLeastLoadedDoctor(String specialty, LocalDateTime time, int durationMinutes) {
+        if (doctorService == null) {
+            return null;
+        }
+        Doctor[] candidates = doctorService.getDoctorsBySpecialty(specialty);
+        Doctor onDuty = leastLoaded(candidates, time, durationMinutes, true);
+        return onDuty != null ? onDuty : leastLoaded(candidates, time, durationMinutes, false);
+    }
+
+    /**
+     * Find a doctor's next free default-length slots starting at or after the given time
+     */
+    public TimeSlot[] findNextAvailableSlots(int doctorId, LocalDateTime after, int count) {
+        return findNextAvailableSlots(doctorId, after, count, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Find the next times, at or after the given time and earliest first, at which a doctor
+     * is free for the given number of minutes. Only bookable times are returned: slot starts
+     * within clinic hours and the one-year booking window.
+     */
+    public TimeSlot[] findNextAvailableSlots(int doctorId, LocalDateTime after, int count, int durationMinutes) {
+        if (doctorService != null && doctorService.findDoctorById(doctorId) == null) {
+            return new TimeSlot[0];
+        }
+        return findNextAvailableSlots(new int[] {doctorId}, null, NO_PATIENT, after, count, durationMinutes);
+    }
+
+    /**
+     * Find a doctor's next free slots as findNextAvailableSlots does, leaving out the times at
+     * which the patient has another appointment overlapping the slot
+     */
+    public TimeSlot[] findNextAvailableSlotsForPatient(int patientId, int doctorId, LocalDateTime after, int count,
+                                                       int durationMinutes) {
+        if (doctorService != null && doctorService.findDoctorById(doctorId) == null) {
+            return new TimeSlot[0];
+        }
+        return findNextAvailableSlots(new int[] {doctorId}, null, patientId, after, count, durationMinutes);
+    }
+
+    /**
+     * Find the next times at which some doctor of a specialty is free for a default-length
+     * appointment
+     */
+    public TimeSlot[] findNextAvailableSlots(String specialty, LocalDateTime after, int count) {
+        return findNextAvailableSlots(specialty, after, count, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Find the next times at which some doctor of a specialty is free for the given number of
+     * minutes, earliest first. Each slot names the doctor findLeastLoadedDoctor would assign
+     * at that time.
+     */
+    public TimeSlot[] findNextAvailableSlots(String specialty, LocalDateTime after, int count, int durationMinutes) {
+        return findNextAvailableSlotsForPatient(NO_PATIENT, specialty, after, count, durationMinutes);
+    }
+
+    /**
+     * Find the next times at which some doctor of a specialty is free, as
+     * findNextAvailableSlots does, leaving out the times at which the patient has another
+     * appointment overlapping the slot
+     */
+    public TimeSlot[] findNextAvailableSlotsForPatient(int patientId, String specialty, LocalDateTime after, int count,
+                                                       int durationMinutes) {
+        if (doctorService == null) {
+            return new TimeSlot[0];
+        }
+        Doctor[] doctors = doctorService.getDoctorsBySpecialty(specialty);
+        int[] doctorIds = new int[doctors.length];
+        for (int i = 0; i < doctors.length; i++) {
+            doctorIds[i] = doctors[i].getId();
+        }
+        return findNextAvailableSlots(doctorIds, specialty, patientId, after, count, durationMinutes);
+    }
+
+    /**
+     * Get the number of pending appointments of a doctor
+     */
+    public int getPendingCount(int doctorId) {
+        IndexedMinHeap<Appointment> doctorQueue = doctorQueues.get(doctorId);
+        return doctorQueue == null ? 0 : doctorQueue.size();
+    }
+
+    /**
+     * Move a pending appointment to a new time, keeping its length. Returns null if the
+     * appointment doesn't exist, the new time is invalid, or the doctor or patient has
+     * another appointment overlapping the new time.
+     */
+    public Appointment rescheduleAppointment(int appointmentId, LocalDateTime newTime) {
+        PendingAppointment pending = appointmentsById.get(appointmentId);
+        if (pending == null || !isValidAppointmentTime(newTime, pending.appointment.getDurationMinutes())) {
             return null;
         }
 
-        Appointment appointment = new Appointment(nextId++, patientId, doctorId, appointmentTime);
-        appointmentQueue.enqueue(appointment);
-        saveAppointments();
+        Appointment appointment = pending.appointment;
+        int duration = appointment.getDurationMinutes();
+        releaseSlots(appointment);
+        if (hasTimeConflict(appointment.getDoctorId(), newTime, duration)
+                || hasTimeConflict(appointment.getPatientId(), newTime, duration, true)) {
+            occupySlots(appointment);
+            return null;
+        }
+
+        appointment.setAppointmentTime(newTime);
+        occupySlots(appointment);
+        long key = queueKey(newTime);
+        appointmentQueue.updateKey(pending.queueHandle, key);
+        doctorQueues.get(appointment.getDoctorId()).updateKey(pending.doctorQueueHandle, key);
+        logOperation(OP_UPDATE, appointment.toFileString());
         return appointment;
-    }    /**
+    }
+
+    /**
+     * Cancel a pending appointment
+     */
+    public boolean cancelAppointment(int appointmentId) {
+        PendingAppointment pending = appointmentsById.get(appointmentId);
+        if (pending == null) {
+            return false;
+        }
+        removePending(pending);
+        logOperation(OP_CANCEL, String.valueOf(appointmentId));
+        return true;
+    }
+
+    /**
      * Process the next appointment in the queue
      */
     public Appointment processNextAppointment() {
@@ -65,14 +315,294 @@ public class AppointmentService {
     }
     
     /**
-     * Process the next appointment in the queue with diagnosis information
+     * Process the earliest pending appointment with diagnosis information
      */
     public Appointment processNextAppointment(String complaint, String diagnosis, String medication) {
-        if (appointmentQueue.isEmpty()) {
+        Appointment next = peekNextAppointment();
+        if (next == null) {
+            return null;
+        }
+        return completeAppointment(appointmentsById.get(next.getAppointmentId()), complaint, diagnosis, medication);
+    }
+
+    /**
+     * Process the earliest pending appointment of a specific doctor with diagnosis information
+     */
+    public Appointment processNextAppointment(int doctorId, String complaint, String diagnosis, String medication) {
+        Appointment next = peekNextAppointment(doctorId);
+        if (next == null) {
             return null;
         }
+        return completeAppointment(appointmentsById.get(next.getAppointmentId()), complaint, diagnosis, medication);
+    }
+
+    /**
+     * Get the earliest pending appointment across all doctors, or null if there is none
+     */
+    public Appointment peekNextAppointment() {
+        return appointmentQueue.peek();
+    }
+
+    /**
+     * Get the earliest pending appointment of a specific doctor, or null if there is none
+     */
+    public Appointment peekNextAppointment(int doctorId) {
+        IndexedMinHeap<Appointment> doctorQueue = doctorQueues.get(doctorId);
+        return doctorQueue == null ? null : doctorQueue.peek();
+    }
+
+    /**
+     * Find a pending appointment by ID
+     */
+    public Appointment getAppointmentById(int appointmentId) {
+        PendingAppointment pending = appointmentsById.get(appointmentId);
+        return pending != null ? pending.appointment : null;
+    }
+
+    /**
+     * View upcoming appointments, earliest first
+     */
+    public Appointment[] viewUpcomingAppointments() {
+        return toSortedArray(appointmentQueue);
+    }
+
+    /**
+     * Get upcoming appointments for a specific doctor, earliest first
+     */
+    public Appointment[] getDoctorAppointments(int doctorId) {
+        IndexedMinHeap<Appointment> doctorQueue = doctorQueues.get(doctorId);
+        if (doctorQueue == null) {
+            return new Appointment[0];
+        }
+        return toSortedArray(doctorQueue);
+    }
+
+    /**
+     * Get upcoming appointments for a specific patient, earliest first
+     */
+    public Appointment[] getPatientAppointments(int patientId) {
+        // The patient's interval tree holds exactly their pending appointments, by start time
+        IntervalTree<Appointment> patientTree = patientIntervals.get(patientId);
+        if (patientTree == null) {
+            return new Appointment[0];
+        }
+        Appointment[] result = new Appointment[patientTree.size()];
+        int[] index = {0};
+        patientTree.forEach(appointment -> result[index[0]++] = appointment);
+        return result;
+    }
+
+    /**
+     * Walk the doctors' calendars a day at a time, taking free slots straight from the
+     * day's bit mask, so fully booked days cost one mask per doctor. Slots the patient is
+     * booked over are skipped, unless patientId is NO_PATIENT.
+     */
+    private TimeSlot[] findNextAvailableSlots(int[] doctorIds, String specialty, int patientId, LocalDateTime after,
+                                              int count, int durationMinutes) {
+        if (doctorIds.length == 0 || count <= 0 || !isValidDuration(durationMinutes)) {
+            return new TimeSlot[0];
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = after.isAfter(now) ? after : now;
+        LocalDateTime end = now.plusYears(1);
+        long firstDay = start.toLocalDate().toEpochDay();
+        long lastDay = end.toLocalDate().toEpochDay();
+
+        int slotsNeeded = (durationMinutes + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        TimeSlot[] found = new TimeSlot[Math.min(count, SLOTS_PER_DAY * 366)];
+        int foundCount = 0;
+        for (long day = firstDay; day <= lastDay && foundCount < found.length; day++) {
+            long free = 0;
+            for (int doctorId : doctorIds) {
+                SlotCalendar calendar = doctorCalendars.get(doctorId);
+                free |= calendar == null ? ALL_SLOTS : fittingSlots(~calendar.getBookedSlots(day), slotsNeeded);
+            }
+            if (day == firstDay) {
+                free &= slotsFrom(start.toLocalTime());
+            }
+            if (day == lastDay) {
+                free &= slotsUntil(end.toLocalTime());
+            }
+
+            LocalDate date = LocalDate.ofEpochDay(day);
+            while (free != 0 && foundCount < found.length) {
+                int slot = Long.numberOfTrailingZeros(free);
+                free &= free - 1;
+                LocalDateTime time = date.atTime(OPENING_TIME).plusMinutes((long) slot * SLOT_MINUTES);
+                if (patientId != NO_PATIENT && hasTimeConflict(patientId, time, durationMinutes, true)) {
+                    continue;
+                }
+                int doctorId = doctorIds[0];
+                if (specialty != null) {
+                    // Leave the slot out if no doctor passes the exact conflict check
+                    Doctor doctor = findLeastLoadedDoctor(specialty, time, durationMinutes);
+                    if (doctor == null) {
+                        continue;
+                    }
+                    doctorId = doctor.getId();
+                }
+                found[foundCount++] = new TimeSlot(doctorId, time, durationMinutes);
+            }
+        }
+        return foundCount == found.length ? found : Arrays.copyOf(found, foundCount);
+    }
+
+    /**
+     * Get the mask of slots starting a run of the given number of free slots. Slots past the
+     * last start time are free: an appointment running into them also covers the last one.
+     */
+    private static long fittingSlots(long free, int slotsNeeded) {
+        long fitting = free;
+        for (int i = 1; i < slotsNeeded; i++) {
+            fitting &= (free >>> i) | (-1L << (Long.SIZE - i));
+        }
+        return fitting & ALL_SLOTS;
+    }
+
+    /**
+     * Get the mask of slots starting at or after a time of day
+     */
+    private static long slotsFrom(LocalTime time) {
+        // Round a part second up so no slot starts before the given time
+        int seconds = time.toSecondOfDay() + (time.getNano() > 0 ? 1 : 0) - OPENING_TIME.toSecondOfDay();
+        if (seconds <= 0) {
+            return ALL_SLOTS;
+        }
+        int first = (seconds + SLOT_MINUTES * 60 - 1) / (SLOT_MINUTES * 60);
+        return first >= SLOTS_PER_DAY ? 0 : ALL_SLOTS & (-1L << first);
+    }
+
+    /**
+     * Get the mask of slots starting at or before a time of day
+     */
+    private static long slotsUntil(LocalTime time) {
+        int seconds = time.toSecondOfDay() - OPENING_TIME.toSecondOfDay();
+        if (seconds < 0) {
+            return 0;
+        }
+        int last = Math.min(seconds / (SLOT_MINUTES * 60), SLOTS_PER_DAY - 1);
+        return ALL_SLOTS & ((1L << (last + 1)) - 1);
+    }
+
+    /**
+     * Pick the free doctor with the fewest pending appointments, lowest ID first on a tie
+     */
+    private Doctor leastLoaded(Doctor[] candidates, LocalDateTime time, int durationMinutes, boolean onDutyOnly) {
+        Doctor best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (Doctor doctor : candidates) {
+            if (onDutyOnly && !doctorService.isOnDuty(doctor.getId())) {
+                continue;
+            }
+            if (hasTimeConflict(doctor.getId(), time, durationMinutes)) {
+                continue;
+            }
+            // The doctor's queue size is the load counter, kept current by every enqueue and removal
+            int load = getPendingCount(doctor.getId());
+            if (load < bestLoad || (load == bestLoad && doctor.getId() < best.getId())) {
+                best = doctor;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check if the appointment time and length are valid
+     */
+    private boolean isValidAppointmentTime(LocalDateTime time, int durationMinutes) {
+        if (!isValidDuration(durationMinutes)) {
+            return false;
+        }
+        
+        // Check if time is in the future
+        if (time.isBefore(LocalDateTime.now())) {
+            return false;
+        }
+        
+        // Check if time is within one year from now
+        if (time.isAfter(LocalDateTime.now().plusYears(1))) {
+            return false;
+        }
         
-        Appointment appointment = appointmentQueue.dequeue();
+        // Check if time is within clinic hours (7:00 to 22:00)
+        return slotOf(time.toLocalTime()) >= 0;
+    }
+
+    private static boolean isValidDuration(int durationMinutes) {
+        return durationMinutes > 0 && durationMinutes <= MAX_DURATION_MINUTES;
+    }
+
+    /**
+     * Check if a doctor has no pending appointment overlapping a default-length appointment
+     * at the given time
+     */
+    public boolean isDoctorFree(int doctorId, LocalDateTime time) {
+        return isDoctorFree(doctorId, time, Appointment.DEFAULT_DURATION_MINUTES);
+    }
+
+    /**
+     * Check if a doctor has no pending appointment overlapping the given minutes from a time
+     */
+    public boolean isDoctorFree(int doctorId, LocalDateTime time, int durationMinutes) {
+        return !hasTimeConflict(doctorId, time, durationMinutes);
+    }
+
+    /**
+     * Check if there's a time conflict for the doctor
+     */
+    private boolean hasTimeConflict(int doctorId, LocalDateTime time, int durationMinutes) {
+        return overlapsPending(doctorIntervals.get(doctorId), time, durationMinutes);
+    }
+
+    /**
+     * Check if there's a time conflict for the patient
+     */
+    private boolean hasTimeConflict(int patientId, LocalDateTime time, int durationMinutes, boolean isPatient) {
+        return overlapsPending(patientIntervals.get(patientId), time, durationMinutes);
+    }
+
+    private static boolean overlapsPending(IntervalTree<Appointment> intervals, LocalDateTime time,
+                                           int durationMinutes) {
+        long start = queueKey(time);
+        return intervals != null && intervals.overlaps(start, start + durationMinutes * 60L);
+    }
+
+    /**
+     * Add a pending appointment to the global queue, its doctor's queue and the lookup indexes
+     */
+    private void enqueuePending(Appointment appointment) {
+        IndexedMinHeap<Appointment> doctorQueue = doctorQueues.get(appointment.getDoctorId());
+        if (doctorQueue == null) {
+            doctorQueue = new IndexedMinHeap<>();
+            doctorQueues.put(appointment.getDoctorId(), doctorQueue);
+        }
+        long key = queueKey(appointment.getAppointmentTime());
+        PendingAppointment pending = new PendingAppointment(appointment);
+        pending.queueHandle = appointmentQueue.insert(key, appointment);
+        pending.doctorQueueHandle = doctorQueue.insert(key, appointment);
+        appointmentsById.put(appointment.getAppointmentId(), pending);
+        occupySlots(appointment);
+    }
+
+    /**
+     * Remove a pending appointment from both queues and the lookup indexes
+     */
+    private void removePending(PendingAppointment pending) {
+        Appointment appointment = pending.appointment;
+        appointmentQueue.remove(pending.queueHandle);
+        doctorQueues.get(appointment.getDoctorId()).remove(pending.doctorQueueHandle);
+        appointmentsById.remove(appointment.getAppointmentId());
+        releaseSlots(appointment);
+    }
+
+    /**
+     * Mark a pending appointment as completed and record its diagnosis
+     */
+    private Appointment completeAppointment(PendingAppointment pending, String complaint, String diagnosis,
+                                            String medication) {
+        removePending(pending);
+        Appointment appointment = pending.appointment;
         appointment.setCompleted(true);
         
         // Save to Appointment
@@ -92,197 +622,253 @@ public class AppointmentService {
             );
         }
         
-        saveAppointments();
+        logOperation(OP_COMPLETE, appointment.toFileString());
         return appointment;
-    }/**
-     * View upcoming appointments
+    }
+
+    /**
+     * Copy the contents of a queue into an array sorted by appointment time
      */
-    public Appointment[] viewUpcomingAppointments() {
-        Object[] objArray = appointmentQueue.toArray();
-        Appointment[] result = new Appointment[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            result[i] = (Appointment) objArray[i];
-        }
+    private static Appointment[] toSortedArray(IndexedMinHeap<Appointment> queue) {
+        Appointment[] result = new Appointment[queue.size()];
+        int[] index = {0};
+        queue.forEach(appointment -> result[index[0]++] = appointment);
+        Arrays.sort(result, BY_TIME);
         return result;
-    }    /**
-     * Get upcoming appointments for a specific doctor
+    }
+
+    /**
+     * Priority of an appointment in the queues: its time in epoch seconds
      */
-    public Appointment[] getDoctorAppointments(int doctorId) {
-        Object[] objArray = appointmentQueue.toArray();
-        Appointment[] allAppointments = new Appointment[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            allAppointments[i] = (Appointment) objArray[i];
+    private static long queueKey(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Add the appointment's time range to its doctor's and patient's interval trees, and mark
+     * every slot it overlaps as taken in the doctor's calendar
+     */
+    private void occupySlots(Appointment appointment) {
+        long start = queueKey(appointment.getAppointmentTime());
+        long end = start + appointment.getDurationMinutes() * 60L;
+        IntervalTree<Appointment> doctorTree = doctorIntervals.get(appointment.getDoctorId());
+        if (doctorTree == null) {
+            doctorTree = new IntervalTree<>();
+            doctorIntervals.put(appointment.getDoctorId(), doctorTree);
         }
-        
-        int count = 0;
-        
-        // Count doctor's appointments
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getDoctorId() == doctorId) {
-                count++;
-            }
+        doctorTree.insert(start, end, appointment.getAppointmentId(), appointment);
+        IntervalTree<Appointment> patientTree = patientIntervals.get(appointment.getPatientId());
+        if (patientTree == null) {
+            patientTree = new IntervalTree<>();
+            patientIntervals.put(appointment.getPatientId(), patientTree);
         }
-        
-        // Create and fill result array
-        Appointment[] result = new Appointment[count];
-        int index = 0;
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getDoctorId() == doctorId) {
-                result[index++] = appointment;
-            }
+        patientTree.insert(start, end, appointment.getAppointmentId(), appointment);
+
+        SlotCalendar calendar = doctorCalendars.get(appointment.getDoctorId());
+        if (calendar == null) {
+            calendar = new SlotCalendar(CALENDAR_DAYS);
+            doctorCalendars.put(appointment.getDoctorId(), calendar);
         }
-        
-        return result;
-    }    /**
-     * Get upcoming appointments for a specific patient
+        long day = appointment.getAppointmentTime().toLocalDate().toEpochDay();
+        for (int slot = firstSlot(appointment); slot <= lastSlot(appointment); slot++) {
+            calendar.book(day, slot);
+        }
+    }
+
+    /**
+     * Remove the appointment's time range from its doctor's and patient's interval trees,
+     * and free the calendar slots it overlapped that no other appointment still overlaps
      */
-    public Appointment[] getPatientAppointments(int patientId) {
-        Object[] objArray = appointmentQueue.toArray();
-        Appointment[] allAppointments = new Appointment[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            allAppointments[i] = (Appointment) objArray[i];
+    private void releaseSlots(Appointment appointment) {
+        long start = queueKey(appointment.getAppointmentTime());
+        IntervalTree<Appointment> doctorTree = doctorIntervals.get(appointment.getDoctorId());
+        if (doctorTree != null) {
+            doctorTree.remove(start, appointment.getAppointmentId());
         }
-        
-        int count = 0;
-        
-        // Count patient's appointments
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getPatientId() == patientId) {
-                count++;
+        IntervalTree<Appointment> patientTree = patientIntervals.get(appointment.getPatientId());
+        if (patientTree != null) {
+            patientTree.remove(start, appointment.getAppointmentId());
+            if (patientTree.isEmpty()) {
+                patientIntervals.remove(appointment.getPatientId());
             }
         }
-        
-        // Create and fill result array
-        Appointment[] result = new Appointment[count];
-        int index = 0;
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getPatientId() == patientId) {
-                result[index++] = appointment;
+
+        SlotCalendar calendar = doctorCalendars.get(appointment.getDoctorId());
+        if (calendar == null) {
+            return;
+        }
+        long day = appointment.getAppointmentTime().toLocalDate().toEpochDay();
+        long openingKey = queueKey(appointment.getAppointmentTime().toLocalDate().atTime(OPENING_TIME));
+        for (int slot = firstSlot(appointment); slot <= lastSlot(appointment); slot++) {
+            long slotStart = openingKey + slot * SLOT_MINUTES * 60L;
+            if (doctorTree == null || !doctorTree.overlaps(slotStart, slotStart + SLOT_MINUTES * 60L)) {
+                calendar.release(day, slot);
             }
         }
-        
-        return result;
     }
 
     /**
-     * Check if the appointment time is valid
+     * Get the first calendar slot of its day that an appointment overlaps
      */
-    private boolean isValidAppointmentTime(LocalDateTime time) {
-        // Check if time is in the future
-        if (time.isBefore(LocalDateTime.now())) {
-            return false;
+    private static int firstSlot(Appointment appointment) {
+        int seconds = appointment.getAppointmentTime().toLocalTime().toSecondOfDay() - OPENING_TIME.toSecondOfDay();
+        return Math.max(seconds, 0) / (SLOT_MINUTES * 60);
+    }
+
+    /**
+     * Get the last calendar slot of its day that an appointment overlaps, below firstSlot if
+     * it lies outside clinic hours (only possible in old data). Appointments start no later
+     * than closing time and are too short to reach the next day's opening.
+     */
+    private static int lastSlot(Appointment appointment) {
+        int seconds = appointment.getAppointmentTime().toLocalTime().toSecondOfDay() - OPENING_TIME.toSecondOfDay();
+        long end = seconds + appointment.getDurationMinutes() * 60L;
+        if (end <= 0) {
+            return -1;
         }
-        
-        // Check if time is within one year from now
-        if (time.isAfter(LocalDateTime.now().plusYears(1))) {
-            return false;
+        return (int) Math.min((end - 1) / (SLOT_MINUTES * 60), SLOTS_PER_DAY - 1);
+    }
+
+    /**
+     * Get the index of the slot containing a time of day, or -1 outside clinic hours. Slots
+     * start every SLOT_MINUTES from opening; the last one starts at closing time.
+     */
+    private static int slotOf(LocalTime time) {
+        if (time.isBefore(OPENING_TIME) || time.isAfter(CLOSING_TIME)) {
+            return -1;
         }
-        
-        // Check if time is within clinic hours (7:00 to 22:00)
-        LocalTime appointmentTime = time.toLocalTime();
-        LocalTime openingTime = LocalTime.of(7, 0);
-        LocalTime closingTime = LocalTime.of(22, 0);
-        
-        return !appointmentTime.isBefore(openingTime) && !appointmentTime.isAfter(closingTime);
-    }    /**
-     * Check if there's a time conflict for the doctor
+        return (time.toSecondOfDay() - OPENING_TIME.toSecondOfDay()) / (SLOT_MINUTES * 60);
+    }
+
+    /**
+     * Load appointments from file, then replay the operation log on top of them.
+     * Throws UncheckedIOException if the file exists but cannot be read.
      */
-    private boolean hasTimeConflict(int doctorId, LocalDateTime time) {
-        Object[] objArray = appointmentQueue.toArray();
-        Appointment[] appointments = new Appointment[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            appointments[i] = (Appointment) objArray[i];
+    private void loadAppointmentsFromFile() {
+        try {
+            appointmentLog.loadSnapshot(line -> {
+                Appointment appointment = parseAppointment(line);
+                if (appointment != null) {
+                    applyAppointment(appointment);
+                }
+            });
+            nextId = Math.max(nextId, appointmentLog.getSnapshotNextId());
+        } catch (NoSuchFileException e) {
+            // File might not exist yet, which is fine
+            System.out.println("Appointment file not found. Starting with empty queue.");
+        } catch (IOException e) {
+            // Going on with part of the file would overwrite the rest on the next save
+            throw new UncheckedIOException("Cannot read " + APPOINTMENT_FILE + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
         }
         
-        for (Appointment appointment : appointments) {
-            if (appointment.getDoctorId() == doctorId && 
-                appointment.getAppointmentTime().equals(time)) {
-                return true;
+        try {
+            appointmentLog.replay(this::replayOperation);
+        } catch (IOException e) {
+            // Compacting without the unread entries would delete them with the old segments
+            throw new UncheckedIOException("Cannot read " + APPOINTMENT_LOG + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
+        }
+        compactIfNeeded();
+    }
+    
+    /**
+     * Apply one logged operation while replaying the appointment log
+     */
+    private void replayOperation(String operation, String record) {
+        if (operation.equals(OP_CANCEL)) {
+            int id = Integer.parseInt(record);
+            PendingAppointment pending = appointmentsById.get(id);
+            if (pending != null) {
+                removePending(pending);
             }
+            return;
         }
-        return false;
-    }    /**
-     * Check if there's a time conflict for the patient
+        
+        // CREATE, UPDATE and COMPLETE all carry the full record
+        Appointment appointment = parseAppointment(record);
+        if (appointment != null) {
+            applyAppointment(appointment);
+        }
+    }
+    
+    /**
+     * Put a loaded appointment into the queues, replacing any earlier version with the same ID
      */
-    private boolean hasTimeConflict(int patientId, LocalDateTime time, boolean isPatient) {
-        Object[] objArray = appointmentQueue.toArray();
-        Appointment[] appointments = new Appointment[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            appointments[i] = (Appointment) objArray[i];
+    private void applyAppointment(Appointment appointment) {
+        PendingAppointment existing = appointmentsById.get(appointment.getAppointmentId());
+        if (existing != null) {
+            removePending(existing);
         }
         
-        for (Appointment appointment : appointments) {
-            if (appointment.getPatientId() == patientId && 
-                appointment.getAppointmentTime().equals(time)) {
-                return true;
-            }
+        // Only add to queue if not completed
+        if (!appointment.isCompleted()) {
+            enqueuePending(appointment);
+        }
+        
+        if (appointment.getAppointmentId() >= nextId) {
+            nextId = appointment.getAppointmentId() + 1;
         }
-        return false;
-    }    /**
-     * Load appointments from file
+    }
+    
+    /**
+     * Parse one appointment in file format, or return null if the line has too few fields
      */
-    private void loadAppointmentsFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(APPOINTMENT_FILE))) {
-            String line;
-            int maxId = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",(?=([^\\\\]|\\\\[^,])*$)"); // Split by commas not escaped with backslash
-                if (parts.length >= 5) {
-                    int id = Integer.parseInt(parts[0]);
-                    int patientId = Integer.parseInt(parts[1]);
-                    int doctorId = Integer.parseInt(parts[2]);
-                    LocalDateTime time = LocalDateTime.parse(parts[3]);
-                    boolean completed = Boolean.parseBoolean(parts[4]);
-                    
-                    // Get diagnosis data if available
-                    String complaint = parts.length > 5 ? unescapeCommas(parts[5]) : "";
-                    String diagnosis = parts.length > 6 ? unescapeCommas(parts[6]) : "";
-                    String medication = parts.length > 7 ? unescapeCommas(parts[7]) : "";
-                    
-                    Appointment appointment = new Appointment(id, patientId, doctorId, time);
-                    appointment.setCompleted(completed);
-                    appointment.setComplaint(complaint);
-                    appointment.setDiagnosis(diagnosis);
-                    appointment.setMedication(medication);
-                    
-                    // Only add to queue if not completed
-                    if (!completed) {
-                        appointmentQueue.enqueue(appointment);
-                    }
-                    
-                    if (id > maxId) {
-                        maxId = id;
-                    }
-                }
-            }
-            
-            nextId = maxId + 1;
-        } catch (IOException e) {
-            // File might not exist yet, which is fine
-            System.out.println("Appointment file not found. Starting with empty queue.");
+    private Appointment parseAppointment(String line) {
+        int id = tokenizer.reset(line).nextInt();
+        int patientId = tokenizer.nextInt();
+        int doctorId = tokenizer.nextInt();
+        LocalDateTime time = tokenizer.nextDateTime();
+        boolean completed = tokenizer.nextBoolean();
+        if (tokenizer.hasMissingFields()) {
+            return null;
+        }
+        
+        // Get diagnosis data if available; missing trailing fields read as empty
+        String complaint = tokenizer.nextString();
+        String diagnosis = tokenizer.nextString();
+        String medication = tokenizer.nextString();
+        int duration = tokenizer.hasNext() ? tokenizer.nextInt() : Appointment.DEFAULT_DURATION_MINUTES;
+        // Keep durations within the bounds scheduling accepts, so a bad line cannot block
+        // a doctor's calendar for days
+        if (duration <= 0) {
+            duration = Appointment.DEFAULT_DURATION_MINUTES;
+        } else if (duration > MAX_DURATION_MINUTES) {
+            duration = MAX_DURATION_MINUTES;
         }
+        
+        Appointment appointment = new Appointment(id, patientId, doctorId, time, duration);
+        appointment.setCompleted(completed);
+        appointment.setComplaint(complaint);
+        appointment.setDiagnosis(diagnosis);
+        appointment.setMedication(medication);
+        return appointment;
     }
     
     /**
-     * Helper method to unescape commas in text fields from file storage
-     */
-    private String unescapeCommas(String text) {
-        if (text == null) return "";
-        return text.replace("\\,", ",");
-    }/**
-     * Save appointments to file
-     */
-    private void saveAppointments() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(APPOINTMENT_FILE))) {
-            Object[] objArray = appointmentQueue.toArray();
-            for (Object obj : objArray) {
-                Appointment appointment = (Appointment) obj;
-                writer.write(appointment.toFileString());
-                writer.newLine();
-            }
-        } catch (IOException e) {
+     * Append one appointment operation to the log
+     */
+    private void logOperation(String operation, String record) {
+        lastSave = appointmentLog.append(operation, record);
+        lastSave.exceptionally(e -> {
             System.err.println("Error saving appointments: " + e.getMessage());
+            return null;
+        });
+        compactIfNeeded();
+    }
+
+    /**
+     * Snapshot the pending appointments and compact the log once it has grown long enough
+     */
+    private void compactIfNeeded() {
+        if (!appointmentLog.needsCompaction()) {
+            return;
+        }
+        Appointment[] pending = viewUpcomingAppointments();
+        String[] records = new String[pending.length];
+        for (int i = 0; i < pending.length; i++) {
+            records[i] = pending[i].toFileString();
         }
+        appointmentLog.compact(records, nextId);
     }
 }
@@ -12,6 +12,7 @@ public class AuthService {
     private AdminService adminService;
     private DoctorService doctorService;
     private PatientService patientService;
+    private CredentialIndex credentials;  // Username -> (role, user ID) for all three services
     
     public enum Role {
         ADMIN,
@@ -24,33 +25,51 @@ public class AuthService {
         this.adminService = adminService;
         this.doctorService = doctorService;
         this.patientService = patientService;
+        this.credentials = new CredentialIndex();
+        adminService.setCredentialIndex(credentials);
+        doctorService.setCredentialIndex(credentials);
+        patientService.setCredentialIndex(credentials);
     }
     
     /**
      * Authenticate a user by username and password, determining their role automatically
      */
     public Object[] authenticate(String username, String password) {
-        // Try admin login
-        Admin admin = adminService.login(username, password);
-        if (admin != null) {
-            return new Object[]{admin, Role.ADMIN};
+        // One lookup finds every user with this username, in admin, doctor, patient order
+        for (CredentialIndex.Credential credential = credentials.find(username); credential != null;
+             credential = credential.getNext()) {
+            switch (credential.getRole()) {
+                case ADMIN:
+                    Admin admin = adminService.findAdminById(credential.getUserId());
+                    if (admin != null && admin.getPassword().equals(password)) {
+                        return new Object[]{admin, Role.ADMIN};
+                    }
+                    break;
+                case DOCTOR:
+                    if (doctorService.loginDoctor(credential.getUserId(), password)) {
+                        return new Object[]{doctorService.findDoctorById(credential.getUserId()), Role.DOCTOR};
+                    }
+                    break;
+                case PATIENT:
+                    Patient patient = patientService.findPatientById(credential.getUserId());
+                    if (patient != null && patient.getPassword().equals(password)) {
+                        return new Object[]{patient, Role.PATIENT};
+                    }
+                    break;
+                default:
+                    break;
+            }
         }
-        
-        // Try doctor login
-        Doctor doctor = doctorService.loginDoctorByUsername(username, password);
-        if (doctor != null) {
-            return new Object[]{doctor, Role.DOCTOR};
-        }
-        
-        // Try patient login
-        Patient patient = patientService.findPatientByUsername(username);
-        if (patient != null && patient.getPassword().equals(password)) {
-            return new Object[]{patient, Role.PATIENT};
-        }
-        
         return null;
     }
     
+    /**
+     * Check if any admin, doctor or patient already uses the username
+     */
+    public boolean isUsernameTaken(String username) {
+        return credentials.contains(username);
+    }
+    
     public Role getUserRole(User user) {
         if (user instanceof Admin) {
             return Role.ADMIN;
@@ -0,0 +1,121 @@
+package service;
+
+import java.util.HashMap;
+
+import service.AuthService.Role;
+
+/**
+ * Index from username to the users that log in with it, shared by the admin, doctor and
+ * patient services. Each username maps to at most one user per role, kept in the order
+ * authentication tries them: admin, then doctor, then patient.
+ */
+public class CredentialIndex {
+    /**
+     * A user registered under a username
+     */
+    public static final class Credential {
+        private final Role role;
+        private final int userId;
+        private Credential next;  // Same username, next role in precedence order
+
+        private Credential(Role role, int userId) {
+            this.role = role;
+            this.userId = userId;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public Credential getNext() {
+            return next;
+        }
+    }
+
+    private final HashMap<String, Credential> credentials;
+
+    public CredentialIndex() {
+        this.credentials = new HashMap<>();
+    }
+
+    /**
+     * Register a user under a username, returning false if that role already has a user
+     * with the same username
+     */
+    public boolean add(String username, Role role, int userId) {
+        Credential credential = new Credential(role, userId);
+        Credential current = credentials.get(username);
+        if (current == null || role.ordinal() < current.role.ordinal()) {
+            credential.next = current;
+            credentials.put(username, credential);
+            return true;
+        }
+        while (current.role != role && current.next != null && current.next.role.ordinal() <= role.ordinal()) {
+            current = current.next;
+        }
+        if (current.role == role) {
+            return false;
+        }
+        credential.next = current.next;
+        current.next = credential;
+        return true;
+    }
+
+    /**
+     * Remove a user's registration, returning false if the username is not registered to them
+     */
+    public boolean remove(String username, Role role, int userId) {
+        Credential previous = null;
+        for (Credential current = credentials.get(username); current != null; current = current.next) {
+            if (current.role == role && current.userId == userId) {
+                if (previous != null) {
+                    previous.next = current.next;
+                } else if (current.next != null) {
+                    credentials.put(username, current.next);
+                } else {
+                    credentials.remove(username);
+                }
+                return true;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    /**
+     * Get the users registered under a username, highest precedence first, or null if there are none
+     */
+    public Credential find(String username) {
+        return credentials.get(username);
+    }
+
+    /**
+     * Get the ID of the user with the given role and username, or -1 if there is none
+     */
+    public int findUserId(String username, Role role) {
+        for (Credential current = credentials.get(username); current != null; current = current.next) {
+            if (current.role == role) {
+                return current.userId;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check if any user has the username
+     */
+    public boolean contains(String username) {
+        return credentials.containsKey(username);
+    }
+
+    /**
+     * Get the number of distinct usernames
+     */
+    public int size() {
+        return credentials.size();
+    }
+}
@@ -1,28 +1,67 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
-import java.util.function.Predicate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
+import datastructure.IntObjectMap;
+import datastructure.InvertedIndex;
 import datastructure.LinkedList;
+import datastructure.SkipList;
 import model.Diagnosis;
+import util.DiagnosisDataFile;
+import util.OperationLog;
+import util.ParallelRecordParser;
+import util.RecordTokenizer;
 
 /**
  * Service class for managing diagnosis records
  */
 public class DiagnosisService {
     private LinkedList<Diagnosis> diagnosisList;
+    private IntObjectMap<Diagnosis> diagnosisById;          // Primary-key index
+    private IntObjectMap<Diagnosis> diagnosisByAppointment; // First diagnosis recorded for each appointment
+    private SkipList<Diagnosis> diagnosisByTime;                  // All records ordered by diagnosis time
+    private IntObjectMap<SkipList<Diagnosis>> diagnosisByPatient; // Secondary index: patientId -> records by time
+    private IntObjectMap<SkipList<Diagnosis>> diagnosisByDoctor;  // Secondary index: doctorId -> records by time
+    private InvertedIndex textIndex;    // Words of complaint, diagnosis and medication; built on first search
+    private RecordTokenizer tokenizer;  // Reused for every record read from disk
+    private boolean loading;            // Time indexes are built in one pass once loading ends
+    private OperationLog diagnosisLog;  // Appended on every new record and replayed over DIAGNOSIS_DATA at startup
+    private CompletableFuture<Void> lastSave;  // Write of the most recent change
     private int nextId;
-    private static final String DIAGNOSIS_FILE = "data/Diagnosis.txt";
+    private static final String DIAGNOSIS_DATA = "data/Diagnosis.dat";  // Snapshots go to Diagnosis.dat.<segment>
+    private static final String DIAGNOSIS_FILE = "data/Diagnosis.txt";  // Text format, read only until Diagnosis.dat exists
+    private static final String DIAGNOSIS_LOG = "data/Diagnosis.log";
+    private static final String OP_CREATE = "CREATE";
+
+    // Field masks for searchDiagnosis, matching the field order given to the text index
+    public static final int FIELD_COMPLAINT = 1;
+    public static final int FIELD_DIAGNOSIS = 1 << 1;
+    public static final int FIELD_MEDICATION = 1 << 2;
+    public static final int ALL_FIELDS = FIELD_COMPLAINT | FIELD_DIAGNOSIS | FIELD_MEDICATION;
 
     public DiagnosisService() {
         this.diagnosisList = new LinkedList<>();
+        this.diagnosisById = new IntObjectMap<>();
+        this.diagnosisByAppointment = new IntObjectMap<>();
+        this.diagnosisByTime = new SkipList<>();
+        this.diagnosisByPatient = new IntObjectMap<>();
+        this.diagnosisByDoctor = new IntObjectMap<>();
+        this.tokenizer = new RecordTokenizer();
+        // Each snapshot is a new file, as the current one stays mapped while it is written
+        this.diagnosisLog = new OperationLog(DIAGNOSIS_DATA, DIAGNOSIS_LOG, true);
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
+        this.loading = true;
         loadDiagnosisFromFile();
+        this.loading = false;
+        buildTimeIndexes();
     }
 
     /**
@@ -33,74 +72,80 @@ public class DiagnosisService {
         LocalDateTime now = LocalDateTime.now();
         Diagnosis diagnosisRecord = new Diagnosis(nextId++, appointmentId, patientId, doctorId, 
                                                   now, complaint, diagnosis, medication);
-        diagnosisList.add(diagnosisRecord);
-        saveDiagnosis();
+        indexDiagnosis(diagnosisRecord);
+        saveDiagnosis(diagnosisRecord);
         return diagnosisRecord;
-    }    /**
-     * Get diagnosis records for a specific patient
+    }
+
+    /**
+     * Get the log write of the most recently added record, completing once the entry is on
+     * disk or exceptionally if the write failed
      */
-    public Diagnosis[] getPatientDiagnosis(int patientId) {
-        // First, get all records as Object array
-        Object[] allRecords = diagnosisList.toArray();
-        
-        // Count matching records
-        int count = 0;
-        for (Object obj : allRecords) {
-            Diagnosis diagnosis = (Diagnosis) obj;
-            if (diagnosis.getPatientId() == patientId) {
-                count++;
-            }
+    public CompletableFuture<Void> getLastSave() {
+        return lastSave;
+    }
+
+    /**
+     * Find records whose complaint, diagnosis or medication (as selected by fieldMask)
+     * match a word query such as "fever cough OR rash", in ID order
+     */
+    public Diagnosis[] searchDiagnosis(String query, int fieldMask) {
+        if (textIndex == null) {
+            buildTextIndex();
         }
-        
-        // Create and fill result array
-        Diagnosis[] result = new Diagnosis[count];
-        int index = 0;
-        
-        for (Object obj : allRecords) {
-            Diagnosis diagnosis = (Diagnosis) obj;
-            if (diagnosis.getPatientId() == patientId) {
-                result[index++] = diagnosis;
-            }
+        int[] ids = textIndex.search(query, fieldMask);
+        Diagnosis[] result = new Diagnosis[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = diagnosisById.get(ids[i]);
         }
-        
         return result;
     }
 
     /**
-     * Get diagnosis records for a specific doctor
+     * Get diagnosis records for a specific patient, oldest first
+     */
+    public Diagnosis[] getPatientDiagnosis(int patientId) {
+        return toDiagnosisArray(diagnosisByPatient.get(patientId));
+    }
+
+    /**
+     * Get diagnosis records for a specific doctor, oldest first
      */
     public Diagnosis[] getDoctorDiagnosis(int doctorId) {
-        // First, get all records as Object array
-        Object[] allRecords = diagnosisList.toArray();
-        
-        // Count matching records
-        int count = 0;
-        for (Object obj : allRecords) {
-            Diagnosis diagnosis = (Diagnosis) obj;
-            if (diagnosis.getDoctorId() == doctorId) {
-                count++;
-            }
-        }
-        
-        // Create and fill result array
-        Diagnosis[] result = new Diagnosis[count];
-        int index = 0;
-        
-        for (Object obj : allRecords) {
-            Diagnosis diagnosis = (Diagnosis) obj;
-            if (diagnosis.getDoctorId() == doctorId) {
-                result[index++] = diagnosis;
-            }
-        }
-        
-        return result;
+        return toDiagnosisArray(diagnosisByDoctor.get(doctorId));
+    }
+
+    /**
+     * Get diagnosis records made from (inclusive) to (exclusive) the given times, oldest first
+     */
+    public Diagnosis[] getDiagnosisBetween(LocalDateTime from, LocalDateTime to) {
+        return rangeToArray(diagnosisByTime, from, to);
+    }
+
+    /**
+     * Get a patient's diagnosis records made from (inclusive) to (exclusive) the given times
+     */
+    public Diagnosis[] getPatientDiagnosisBetween(int patientId, LocalDateTime from, LocalDateTime to) {
+        return rangeToArray(diagnosisByPatient.get(patientId), from, to);
+    }
+
+    /**
+     * Get a doctor's diagnosis records made from (inclusive) to (exclusive) the given times
+     */
+    public Diagnosis[] getDoctorDiagnosisBetween(int doctorId, LocalDateTime from, LocalDateTime to) {
+        return rangeToArray(diagnosisByDoctor.get(doctorId), from, to);
     }    /**
      * Get diagnosis record for a specific appointment
      */
     public Diagnosis getDiagnosisByAppointmentId(int appointmentId) {
-        // Use the find method with a predicate
-        Predicate<Diagnosis> findByAppointmentId = diagnosis -> diagnosis.getAppointmentId() == appointmentId;
-        return diagnosisList.find(findByAppointmentId);
+        return diagnosisByAppointment.get(appointmentId);
+    }
+
+    /**
+     * Get a diagnosis record by ID
+     */
+    public Diagnosis getDiagnosisById(int diagnosisId) {
+        return diagnosisById.get(diagnosisId);
     }
 
     /**
@@ -118,63 +163,274 @@ public class DiagnosisService {
     }
 
     /**
-     * Load diagnosis records from file
+     * Load diagnosis records from file, then replay the operation log on top of them.
+     * Throws UncheckedIOException if the data file exists but cannot be read.
      */
     private void loadDiagnosisFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(DIAGNOSIS_FILE))) {
-            String line;
-            int maxId = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",(?=([^\\\\]|\\\\[^,])*$)"); // Split by commas not escaped with backslash
-                if (parts.length >= 8) {
-                    int id = Integer.parseInt(parts[0]);
-                    int appointmentId = Integer.parseInt(parts[1]);
-                    int patientId = Integer.parseInt(parts[2]);
-                    int doctorId = Integer.parseInt(parts[3]);
-                    LocalDateTime time = LocalDateTime.parse(parts[4]);
-                    
-                    String complaint = unescapeCommas(parts[5]);
-                    String diagnosis = unescapeCommas(parts[6]);
-                    String medication = unescapeCommas(parts[7]);
-                    
-                    Diagnosis diagnosisRecord = new Diagnosis(id, appointmentId, patientId, doctorId, 
-                                                            time, complaint, diagnosis, medication);
-                    diagnosisList.add(diagnosisRecord);
-                    
-                    if (id > maxId) {
-                        maxId = id;
-                    }
-                }
+        String dataFileName = diagnosisLog.getSnapshotFile();
+        boolean migrateTextFile = !new File(dataFileName).exists();
+        if (migrateTextFile) {
+            loadDiagnosisFromTextFile();
+        } else {
+            try {
+                // Only the fixed fields are read here; text stays in the mapping until displayed
+                DiagnosisDataFile dataFile = DiagnosisDataFile.open(dataFileName);
+                dataFile.forEach(this::applyDiagnosis);
+                diagnosisLog.restoreSnapshot(dataFile.getSegment(), dataFile.getNextId());
+                nextId = Math.max(nextId, dataFile.getNextId());
+            } catch (IOException e) {
+                // Going on would replay the log without the snapshot and the next compaction
+                // would delete the segments it needs, losing every record in it
+                throw new UncheckedIOException("Cannot read " + dataFileName + " (" + e.getMessage()
+                        + "). Restore it from a backup before starting the clinic again", e);
             }
-            
-            nextId = maxId + 1;
+        }
+        
+        try {
+            diagnosisLog.replay((operation, record) -> {
+                Diagnosis diagnosisRecord = parseDiagnosis(tokenizer, record);
+                if (operation.equals(OP_CREATE) && diagnosisRecord != null) {
+                    applyDiagnosis(diagnosisRecord);
+                }
+            });
         } catch (IOException e) {
-            // File might not exist yet, which is fine
-            System.out.println("Diagnosis file not found. Starting with empty list.");
+            // Compacting without the unread entries would delete them with the old segments
+            throw new UncheckedIOException("Cannot read " + DIAGNOSIS_LOG + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
         }
-    }    /**
-     * Save diagnosis records to file
-     */
-    private void saveDiagnosis() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DIAGNOSIS_FILE))) {
-            Object[] objects = diagnosisList.toArray();
-            
-            for (Object obj : objects) {
-                Diagnosis diagnosis = (Diagnosis) obj;
-                writer.write(diagnosis.toFileString());
-                writer.newLine();
+        // Generations left by a run that ended before it could delete them; none are mapped yet
+        diagnosisLog.deleteOldSnapshots();
+        
+        if (migrateTextFile && !diagnosisList.isEmpty()) {
+            // Write Diagnosis.dat right away so the next start maps it instead of parsing text
+            compact();
+        } else {
+            compactIfNeeded();
+        }
+    }
+    
+    /**
+     * Load records from the older text format of Diagnosis.txt. Throws UncheckedIOException
+     * if the file exists but cannot be read.
+     */
+    private void loadDiagnosisFromTextFile() {
+        try {
+            OperationLog textLog = new OperationLog(DIAGNOSIS_FILE, DIAGNOSIS_LOG);
+            // Parse the text in parallel chunks while reading, then index the records in file order
+            Diagnosis[] records = ParallelRecordParser.parse(textLog::loadSnapshot,
+                    DiagnosisService::parseDiagnosis, Diagnosis[]::new);
+            for (Diagnosis diagnosisRecord : records) {
+                if (diagnosisRecord != null) {
+                    applyDiagnosis(diagnosisRecord);
+                }
             }
+            diagnosisLog.restoreSnapshot(textLog.getSnapshotSegment(), textLog.getSnapshotNextId());
+            nextId = Math.max(nextId, textLog.getSnapshotNextId());
+        } catch (NoSuchFileException e) {
+            // File might not exist yet, which is fine
+            System.out.println("Diagnosis file not found. Starting with empty list.");
         } catch (IOException e) {
+            // Going on with part of the file would overwrite the rest on the next save
+            throw new UncheckedIOException("Cannot read " + DIAGNOSIS_FILE + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
+        }
+    }
+    
+    /**
+     * Add a loaded record unless a record with the same ID is already present
+     */
+    private void applyDiagnosis(Diagnosis diagnosisRecord) {
+        int id = diagnosisRecord.getDiagnosisId();
+        if (diagnosisById.containsKey(id)) {
+            return;
+        }
+        indexDiagnosis(diagnosisRecord);
+        if (id >= nextId) {
+            nextId = id + 1;
+        }
+    }
+    
+    /**
+     * Parse one diagnosis record in file format, or return null if the line has too few fields
+     */
+    private static Diagnosis parseDiagnosis(RecordTokenizer tokenizer, String line) {
+        int id = tokenizer.reset(line).nextInt();
+        int appointmentId = tokenizer.nextInt();
+        int patientId = tokenizer.nextInt();
+        int doctorId = tokenizer.nextInt();
+        LocalDateTime time = tokenizer.nextDateTime();
+        
+        String complaint = tokenizer.nextString();
+        String diagnosis = tokenizer.nextString();
+        String medication = tokenizer.nextString();
+        if (tokenizer.hasMissingFields()) {
+            return null;
+        }
+        
+        return new Diagnosis(id, appointmentId, patientId, doctorId, 
+                             time, complaint, diagnosis, medication);
+    }
+    
+    /**
+     * Queue a new diagnosis record to be appended to the log
+     */
+    private void saveDiagnosis(Diagnosis diagnosisRecord) {
+        lastSave = diagnosisLog.append(OP_CREATE, diagnosisRecord.toFileString());
+        lastSave.exceptionally(e -> {
             System.err.println("Error saving diagnosis records: " + e.getMessage());
+            return null;
+        });
+        compactIfNeeded();
+    }
+
+    /**
+     * Snapshot all records and compact the log once it has grown long enough
+     */
+    private void compactIfNeeded() {
+        if (diagnosisLog.needsCompaction()) {
+            compact();
         }
     }
     
     /**
-     * Helper method to unescape commas in text fields from file storage
+     * Snapshot all records into a new Diagnosis.dat generation and start a new log segment
      */
-    private String unescapeCommas(String text) {
-        if (text == null) return "";
-        return text.replace("\\,", ",");
+    private void compact() {
+        Diagnosis[] records = new Diagnosis[diagnosisList.size()];
+        int index = 0;
+        for (Diagnosis diagnosis : diagnosisList) {
+            records[index++] = diagnosis;
+        }
+        int snapshotNextId = nextId;
+        diagnosisLog.compact((file, segment) -> DiagnosisDataFile.write(file, records, segment, snapshotNextId))
+                .thenRun(() -> {
+                    // Move the records read from the old generation onto the new one, so the old
+                    // mapping is released once collected. Deleting a generation that is still
+                    // mapped fails on Windows; it is retried after the next compaction and at startup.
+                    try {
+                        DiagnosisDataFile.open(diagnosisLog.getSnapshotFile()).rebind(records);
+                    } catch (IOException e) {
+                        System.err.println("Error reopening diagnosis data file: " + e.getMessage());
+                        return;
+                    }
+                    diagnosisLog.deleteOldSnapshots();
+                });
+    }
+    
+    /**
+     * Index the text of every record. Done on first search rather than at startup, since
+     * reading the text pulls it out of the mapped data file.
+     */
+    private void buildTextIndex() {
+        Diagnosis[] records = getAllDiagnosis();
+        // Postings append fastest in ID order
+        Arrays.sort(records, (a, b) -> Integer.compare(a.getDiagnosisId(), b.getDiagnosisId()));
+        InvertedIndex index = new InvertedIndex();
+        for (Diagnosis diagnosisRecord : records) {
+            addToTextIndex(index, diagnosisRecord);
+        }
+        textIndex = index;
+    }
+
+    private static void addToTextIndex(InvertedIndex index, Diagnosis diagnosisRecord) {
+        index.add(diagnosisRecord.getDiagnosisId(), diagnosisRecord.getComplaint(),
+                  diagnosisRecord.getDiagnosis(), diagnosisRecord.getMedication());
+    }
+    
+    /**
+     * Add every loaded record to the time indexes in time order, so each insert lands at the
+     * end of its skip list instead of searching for its place
+     */
+    private void buildTimeIndexes() {
+        Diagnosis[] records = getAllDiagnosis();
+        long[] times = new long[records.length];
+        Integer[] order = new Integer[records.length];
+        for (int i = 0; i < records.length; i++) {
+            times[i] = timeKey(records[i].getDiagnosisTime());
+            order[i] = i;
+        }
+        // Stable, so records with the same time keep their load order
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+        for (int i : order) {
+            addToTimeIndexes(records[i], times[i]);
+        }
+    }
+
+    private void addToTimeIndexes(Diagnosis diagnosisRecord, long time) {
+        diagnosisByTime.insert(time, diagnosisRecord);
+        addToIndex(diagnosisByPatient, diagnosisRecord.getPatientId(), time, diagnosisRecord);
+        addToIndex(diagnosisByDoctor, diagnosisRecord.getDoctorId(), time, diagnosisRecord);
+    }
+    
+    /**
+     * Add a record to the list and all lookup indexes
+     */
+    private void indexDiagnosis(Diagnosis diagnosisRecord) {
+        if (textIndex != null) {
+            addToTextIndex(textIndex, diagnosisRecord);
+        }
+        diagnosisList.add(diagnosisRecord);
+        diagnosisById.put(diagnosisRecord.getDiagnosisId(), diagnosisRecord);
+        diagnosisByAppointment.putIfAbsent(diagnosisRecord.getAppointmentId(), diagnosisRecord);
+        if (!loading) {
+            addToTimeIndexes(diagnosisRecord, timeKey(diagnosisRecord.getDiagnosisTime()));
+        }
+    }
+    
+    /**
+     * Add a record to the bucket for the given key of a secondary index
+     */
+    private void addToIndex(IntObjectMap<SkipList<Diagnosis>> index, int key, long time, Diagnosis diagnosisRecord) {
+        SkipList<Diagnosis> records = index.get(key);
+        if (records == null) {
+            records = new SkipList<>();
+            index.put(key, records);
+        }
+        records.insert(time, diagnosisRecord);
+    }
+    
+    /**
+     * Copy an index bucket into an array, treating a missing bucket as empty
+     */
+    private Diagnosis[] toDiagnosisArray(SkipList<Diagnosis> records) {
+        if (records == null) {
+            return new Diagnosis[0];
+        }
+        Diagnosis[] result = new Diagnosis[records.size()];
+        int index = 0;
+        for (Diagnosis diagnosis : records) {
+            result[index++] = diagnosis;
+        }
+        return result;
+    }
+    
+    /**
+     * Copy the records of an index bucket in a time range into an array
+     */
+    private Diagnosis[] rangeToArray(SkipList<Diagnosis> records, LocalDateTime from, LocalDateTime to) {
+        if (records == null) {
+            return new Diagnosis[0];
+        }
+        long fromKey = timeKey(from);
+        long toKey = timeKey(to);
+        Diagnosis[] result = new Diagnosis[records.countInRange(fromKey, toKey)];
+        int[] index = {0};
+        records.forEachInRange(fromKey, toKey, diagnosis -> result[index[0]++] = diagnosis);
+        return result;
+    }
+    
+    /**
+     * Convert a diagnosis time to a skip list key: nanoseconds since the epoch, read as UTC
+     */
+    private static long timeKey(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        // Times outside about 1678-2262 don't fit; clamp them so open-ended ranges still work
+        if (seconds >= Long.MAX_VALUE / 1_000_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / 1_000_000_000L) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000_000L + time.getNano();
     }
 }
@@ -25,6 +25,7 @@ public class DoctorMenuController extends MenuController {
             "View My Upcoming Appointments",
             "Process Next Appointment",
             "View Patient Medical Records",
+            "Search Medical Records",
             "Logout"
         };
         
@@ -40,6 +41,9 @@ public class DoctorMenuController extends MenuController {
                 viewPatientMedicalRecords();
                 break;
             case 4:
+                searchMedicalRecords();
+                break;
+            case 5:
                 System.out.println("Logging out...");
                 doctorService.logoutDoctor(currentDoctor.getId());
                 return false;
@@ -69,16 +73,15 @@ public class DoctorMenuController extends MenuController {
       private void processNextAppointment() {
         System.out.println("\n----- Process Next Appointment -----");
         
-        // Get doctor's appointments
-        Appointment[] appointments = appointmentService.getDoctorAppointments(currentDoctor.getId());
+        // Get the next appointment from this doctor's queue
+        Appointment nextAppointment = appointmentService.peekNextAppointment(currentDoctor.getId());
         
-        if (appointments.length == 0) {
+        if (nextAppointment == null) {
             System.out.println("You have no upcoming appointments to process.");
             return;
         }
         
         // Show the next appointment
-        Appointment nextAppointment = appointments[0];
         Patient patient = patientService.findPatientById(nextAppointment.getPatientId());
         String patientName = (patient != null) ? patient.getName() : "Unknown";
         
@@ -102,7 +105,7 @@ public class DoctorMenuController extends MenuController {
             // Get medication
             String medication = InputUtil.getString("Prescribed Medication: ");
               // Process with diagnosis information
-            appointmentService.processNextAppointment(complaint, diagnosis, medication);
+            appointmentService.processNextAppointment(currentDoctor.getId(), complaint, diagnosis, medication);
             
             System.out.println("\nAppointment processed successfully.");
             System.out.println("Diagnosis and medication information has been saved.");
@@ -146,9 +149,40 @@ public class DoctorMenuController extends MenuController {
         }
         
         System.out.println("Medical Records for " + patient.getName() + " (ID: " + patient.getId() + "):");
+        displayMedicalRecords(diagnosisRecords, false);
+    }
+    
+    /**
+     * Search all medical records for words in the complaint, diagnosis or medication
+     */
+    private void searchMedicalRecords() {
+        System.out.println("\n----- Search Medical Records -----");
+        
+        if (diagnosisService == null) {
+            System.out.println("Medical records service is not available at this time.");
+            return;
+        }
+        
+        System.out.println("Separate words to find records with all of them; use OR for alternatives (e.g. fever cough OR rash).");
+        String query = InputUtil.getRequiredString("Enter search words");
+        model.Diagnosis[] diagnosisRecords = diagnosisService.searchDiagnosis(query, DiagnosisService.ALL_FIELDS);
+        
+        if (diagnosisRecords.length == 0) {
+            System.out.println("No medical records match: " + query);
+            return;
+        }
+        
+        displayMedicalRecords(diagnosisRecords, true);
+    }
+    
+    /**
+     * Helper method to display medical records; showPatient adds each record's patient,
+     * for lists that are not all from one patient
+     */
+    private void displayMedicalRecords(model.Diagnosis[] records, boolean showPatient) {
         System.out.println("---------------------------------------------");
         
-        for (model.Diagnosis record : diagnosisRecords) {
+        for (model.Diagnosis record : records) {
             // Get doctor name
             Doctor doctor = doctorService.findDoctorById(record.getDoctorId());
             String doctorName = (doctor != null) ? "Dr. " + doctor.getName() : "Unknown Doctor";
@@ -157,6 +191,11 @@ public class DoctorMenuController extends MenuController {
             String dateTime = record.getDiagnosisTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
             
             System.out.println("Date: " + dateTime);
+            if (showPatient) {
+                Patient patient = patientService.findPatientById(record.getPatientId());
+                String patientName = (patient != null) ? patient.getName() : "Unknown Patient";
+                System.out.println("Patient: " + patientName + " (ID: " + record.getPatientId() + ")");
+            }
             System.out.println("Doctor: " + doctorName);
             System.out.println("Complaint: " + record.getComplaint());
             System.out.println("Diagnosis: " + record.getDiagnosis());
@@ -164,6 +203,6 @@ public class DoctorMenuController extends MenuController {
             System.out.println("---------------------------------------------");
         }
         
-        System.out.println("Total records: " + diagnosisRecords.length);
+        System.out.println("Total records: " + records.length);
     }
 }
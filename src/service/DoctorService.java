@@ -1,27 +1,51 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
+import datastructure.IntObjectMap;
 import datastructure.LinkedList;
+import datastructure.RadixTrie;
+import datastructure.TrigramIndex;
 import model.Doctor;
+import service.AuthService.Role;
+import util.DataFileReader;
+import util.PersistencePipeline;
+import util.RecordTokenizer;
 
 /**
  * Service class for managing doctors using a Linked List
  */
 public class DoctorService {
     private LinkedList<Doctor> allDoctors;      // All doctors in the system
-    private LinkedList<Doctor> loggedInDoctors; // Currently logged-in doctors
+    private IntObjectMap<Doctor> doctorsById;   // Primary-key index
+    private HashMap<String, LinkedList<Doctor>> doctorsBySpecialty;  // Lower-case specialty -> doctors
+    private RadixTrie namePrefixes;             // Autocomplete on any word of a name
+    private RadixTrie usernamePrefixes;         // Autocomplete on usernames
+    private SessionRegistry sessions;           // Currently logged-in doctors
+    private CredentialIndex credentials;        // Username index shared with the other services, once set
+    private CompletableFuture<Void> lastSave;   // Write of the most recent change
     private int nextId;
     private static final String DOCTOR_FILE = "data/Doctor.txt";
+    private static final String SESSION_JOURNAL = "data/DoctorSession.log";
 
     public DoctorService() {
         this.allDoctors = new LinkedList<>();
-        this.loggedInDoctors = new LinkedList<>();
+        this.doctorsById = new IntObjectMap<>();
+        this.doctorsBySpecialty = new HashMap<>();
+        this.namePrefixes = new RadixTrie();
+        this.usernamePrefixes = new RadixTrie();
+        // Journaling keeps doctors on duty across restarts; -Dclinic.sessionJournal=false turns it off
+        boolean journal = Boolean.parseBoolean(System.getProperty("clinic.sessionJournal", "true"));
+        this.sessions = new SessionRegistry(journal ? SESSION_JOURNAL : null);
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
         loadDoctorsFromFile();
     }
@@ -32,24 +56,40 @@ public class DoctorService {
     public Doctor addDoctor(String name, String specialty, String username, String password) {
         Doctor doctor = new Doctor(nextId++, name, specialty, username, password);
         allDoctors.add(doctor);
+        doctorsById.put(doctor.getId(), doctor);
+        indexDoctor(doctor);
+        if (credentials != null) {
+            credentials.add(username, Role.DOCTOR, doctor.getId());
+        }
         saveDoctors();
         return doctor;
     }
 
+    /**
+     * Get the save of the most recent change to the doctor list, completing once Doctor.txt
+     * is written or exceptionally if the write failed
+     */
+    public CompletableFuture<Void> getLastSave() {
+        return lastSave;
+    }
+
+    /**
+     * Register all doctors in the shared credential index and keep it up to date from now on
+     */
+    public void setCredentialIndex(CredentialIndex credentials) {
+        this.credentials = credentials;
+        for (Doctor doctor : allDoctors) {
+            credentials.add(doctor.getUsername(), Role.DOCTOR, doctor.getId());
+        }
+    }
+
     /**
      * Login a doctor
      */
     public boolean loginDoctor(int doctorId, String password) {
         Doctor doctor = findDoctorById(doctorId);
         if (doctor != null && doctor.getPassword().equals(password)) {
-            // Check if already logged in
-            if (doctor.isLoggedIn()) {
-                return true; // Already logged in
-            }
-            
-            doctor.setLoginTime(LocalDateTime.now());
-            loggedInDoctors.add(doctor);
-            saveDoctors();
+            openSession(doctor);
             return true;
         }
         return false;
@@ -61,12 +101,7 @@ public class DoctorService {
     public Doctor loginDoctorByUsername(String username, String password) {
         Doctor doctor = findDoctorByUsername(username);
         if (doctor != null && doctor.getPassword().equals(password)) {
-            // Check if already logged in
-            if (!doctor.isLoggedIn()) {
-                doctor.setLoginTime(LocalDateTime.now());
-                loggedInDoctors.add(doctor);
-                saveDoctors();
-            }
+            openSession(doctor);
             return doctor;
         }
         return null;
@@ -77,10 +112,8 @@ public class DoctorService {
      */
     public boolean logoutDoctor(int doctorId) {
         Doctor doctor = findDoctorById(doctorId);
-        if (doctor != null && doctor.isLoggedIn()) {
+        if (doctor != null && sessions.logout(doctorId)) {
             doctor.setLoginTime(null);
-            loggedInDoctors.remove(d -> d.getId() == doctorId);
-            saveDoctors();
             return true;
         }
         return false;
@@ -90,24 +123,87 @@ public class DoctorService {
      * Find a doctor by ID
      */
     public Doctor findDoctorById(int id) {
-        return allDoctors.find(doctor -> doctor.getId() == id);
+        return doctorsById.get(id);
     }
 
     /**
      * Find a doctor by username
      */
     public Doctor findDoctorByUsername(String username) {
+        if (credentials != null) {
+            int id = credentials.findUserId(username, Role.DOCTOR);
+            return id >= 0 ? doctorsById.get(id) : null;
+        }
         return allDoctors.find(doctor -> doctor.getUsername().equals(username));
-    }    /**
+    }
+
+    /**
+     * Autocomplete: get up to limit doctors with a word of their name starting with the
+     * prefix (ignoring case and accents), in alphabetical order
+     */
+    public Doctor[] prefixSearchByName(String prefix, int limit) {
+        return toDoctors(namePrefixes.prefixSearch(TrigramIndex.normalize(prefix), limit));
+    }
+
+    /**
+     * Autocomplete: get up to limit doctors whose username starts with the prefix, in
+     * alphabetical order
+     */
+    public Doctor[] prefixSearchByUsername(String prefix, int limit) {
+        return toDoctors(usernamePrefixes.prefixSearch(prefix, limit));
+    }
+
+    /**
+     * Get the doctors with a specialty, ignoring case
+     */
+    public Doctor[] getDoctorsBySpecialty(String specialty) {
+        LinkedList<Doctor> doctors = doctorsBySpecialty.get(specialtyKey(specialty));
+        if (doctors == null) {
+            return new Doctor[0];
+        }
+        Doctor[] result = new Doctor[doctors.size()];
+        int index = 0;
+        for (Doctor doctor : doctors) {
+            result[index++] = doctor;
+        }
+        return result;
+    }
+
+    /**
+     * Get every specialty offered, in alphabetical order
+     */
+    public String[] getSpecialties() {
+        String[] specialties = new String[doctorsBySpecialty.size()];
+        int index = 0;
+        for (LinkedList<Doctor> doctors : doctorsBySpecialty.values()) {
+            // Spelled the way the first doctor with it has it
+            specialties[index++] = doctors.iterator().next().getSpecialty().trim();
+        }
+        Arrays.sort(specialties, String.CASE_INSENSITIVE_ORDER);
+        return specialties;
+    }
+
+    /**
      * Get all logged-in doctors
      */
     public Doctor[] getLoggedInDoctors() {
-        Object[] objArray = loggedInDoctors.toArray();
-        Doctor[] result = new Doctor[objArray.length];
-        for (int i = 0; i < objArray.length; i++) {
-            result[i] = (Doctor) objArray[i];
+        int[] ids = sessions.getOnDutyDoctorIds();
+        Doctor[] result = new Doctor[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            Doctor doctor = doctorsById.get(id);
+            if (doctor != null) {
+                result[count++] = doctor;
+            }
         }
-        return result;
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Check if a doctor is currently logged in
+     */
+    public boolean isOnDuty(int doctorId) {
+        return sessions.isOnDuty(doctorId);
     }
 
     /**
@@ -123,34 +219,43 @@ public class DoctorService {
     }
 
     /**
-     * Load doctors from file
+     * Load doctors from file. Throws UncheckedIOException if the file exists but cannot be read.
      */
     private void loadDoctorsFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(DOCTOR_FILE))) {
+        try (DataFileReader reader = new DataFileReader(DOCTOR_FILE)) {
+            RecordTokenizer tokenizer = new RecordTokenizer();
             String line;
             int maxId = 0;
+            boolean legacyFormat = false;
             
             while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 6) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    String specialty = parts[2];
-                    
+                int id = tokenizer.reset(line).nextInt();
+                String name = tokenizer.nextString();
+                String specialty = tokenizer.nextString();
+                String username = tokenizer.nextString();
+                String password = tokenizer.nextString();
+                if (!tokenizer.hasMissingFields()) {
+                    // Older files have a login time column between specialty and username
                     LocalDateTime loginTime = null;
-                    if (!parts[3].equals("null")) {
-                        loginTime = LocalDateTime.parse(parts[3]);
+                    if (tokenizer.hasNext()) {
+                        legacyFormat = true;
+                        String loginTimeStr = username;
+                        username = password;
+                        password = tokenizer.nextString();
+                        if (!loginTimeStr.equals("null")) {
+                            loginTime = LocalDateTime.parse(loginTimeStr);
+                        }
                     }
                     
-                    String username = parts[4];
-                    String password = parts[5];
-                    
-                    Doctor doctor = new Doctor(id, name, specialty, loginTime, username, password);
+                    Doctor doctor = new Doctor(id, name, specialty, username, password);
                     allDoctors.add(doctor);
+                    doctorsById.put(id, doctor);
+                    indexDoctor(doctor);
                     
-                    if (doctor.isLoggedIn()) {
-                        loggedInDoctors.add(doctor);
+                    if (loginTime != null) {
+                        sessions.login(id, loginTime);
                     }
+                    doctor.setLoginTime(sessions.getLoginTime(id));
                     
                     if (id > maxId) {
                         maxId = id;
@@ -159,9 +264,48 @@ public class DoctorService {
             }
             
             nextId = maxId + 1;
-        } catch (IOException e) {
+            if (legacyFormat) {
+                // Rewrite without the login time column
+                saveDoctors();
+            }
+        } catch (NoSuchFileException e) {
             // File might not exist yet, which is fine
             System.out.println("Doctor file not found. Starting with empty list.");
+        } catch (IOException e) {
+            // Going on with part of the file would overwrite the rest on the next save
+            throw new UncheckedIOException("Cannot read " + DOCTOR_FILE + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
+        }
+    }
+
+    /**
+     * Add a doctor to the specialty index and the name and username autocomplete indexes
+     */
+    private void indexDoctor(Doctor doctor) {
+        doctorsBySpecialty.computeIfAbsent(specialtyKey(doctor.getSpecialty()), key -> new LinkedList<>()).add(doctor);
+        namePrefixes.insertWords(TrigramIndex.normalize(doctor.getName()), doctor.getId());
+        usernamePrefixes.insert(doctor.getUsername(), doctor.getId());
+    }
+
+    private static String specialtyKey(String specialty) {
+        return specialty.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Doctor[] toDoctors(int[] ids) {
+        Doctor[] result = new Doctor[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = doctorsById.get(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Open a session for the doctor unless one is already open
+     */
+    private void openSession(Doctor doctor) {
+        LocalDateTime now = LocalDateTime.now();
+        if (sessions.login(doctor.getId(), now)) {
+            doctor.setLoginTime(now);
         }
     }
 
@@ -169,14 +313,15 @@ public class DoctorService {
      * Save doctors to file
      */
     private void saveDoctors() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DOCTOR_FILE))) {
-            Doctor[] doctors = getAllDoctors();
-            for (Doctor doctor : doctors) {
-                writer.write(doctor.toFileString());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving doctors: " + e.getMessage());
+        Doctor[] snapshot = new Doctor[allDoctors.size()];
+        int index = 0;
+        for (Doctor doctor : allDoctors) {
+            snapshot[index++] = doctor;
         }
+        lastSave = PersistencePipeline.getInstance().replace(new File(DOCTOR_FILE), snapshot, Doctor::toFileString);
+        lastSave.exceptionally(e -> {
+            System.err.println("Error saving doctors: " + e.getMessage());
+            return null;
+        });
     }
 }
@@ -1,9 +1,14 @@
 package service;
 
+import util.InputUtil;
+
 /**
  * Base class for all menu controllers
  */
 public abstract class MenuController {
+    private static final String[] DURATION_OPTIONS = {"15 minutes", "30 minutes", "45 minutes", "60 minutes"};
+    private static final int DURATION_STEP_MINUTES = 15;
+    
     protected AdminService adminService;
     protected DoctorService doctorService;
     protected PatientService patientService;
@@ -25,6 +30,13 @@ public abstract class MenuController {
         this.diagnosisService = diagnosisService;
     }
     
+    /**
+     * Ask for the length of an appointment, in minutes
+     */
+    protected int getAppointmentDuration() {
+        return InputUtil.getMenuChoice("Select appointment length:", DURATION_OPTIONS) * DURATION_STEP_MINUTES;
+    }
+    
     /**
      * Display the menu and handle user actions
      */
@@ -5,12 +5,15 @@ import java.time.LocalDateTime;
 import model.Appointment;
 import model.Doctor;
 import model.Patient;
+import model.TimeSlot;
 import util.InputUtil;
 
 /**
  * Menu controller for patient users
  */
 public class PatientMenuController extends MenuController {
+    private static final int SLOT_SUGGESTIONS = 5;
+    
     private Patient currentPatient;
     
     public PatientMenuController(Patient patient, AdminService adminService, DoctorService doctorService, 
@@ -57,6 +60,17 @@ public class PatientMenuController extends MenuController {
     private void scheduleAppointment() {
         System.out.println("\n----- Schedule New Appointment -----");
         
+        String[] options = {
+            "Choose a Specialty (least busy doctor is assigned)",
+            "Choose a Specific Doctor"
+        };
+        boolean bySpecialty = InputUtil.getMenuChoice("How would you like to book?", options) == 1;
+        int duration = getAppointmentDuration();
+        if (bySpecialty) {
+            scheduleAppointmentBySpecialty(duration);
+            return;
+        }
+        
         // Display available doctors
         Doctor[] doctors = doctorService.getAllDoctors();
         if (doctors.length == 0) {
@@ -78,19 +92,81 @@ public class PatientMenuController extends MenuController {
             return;
         }
         
-        // Get appointment time
-        LocalDateTime appointmentTime = InputUtil.getDateTime("Enter appointment date", "Enter appointment time");
+        // Offer the doctor's next free slots, or let the patient pick a time
+        TimeSlot slot = chooseTimeSlot(
+                appointmentService.findNextAvailableSlotsForPatient(currentPatient.getId(), doctorId, LocalDateTime.now(),
+                        SLOT_SUGGESTIONS, duration));
+        LocalDateTime appointmentTime = slot != null
+                ? slot.getStartTime()
+                : InputUtil.getDateTime("Enter appointment date", "Enter appointment time");
+        
+        Appointment appointment = appointmentService.scheduleAppointment(currentPatient.getId(), doctorId, appointmentTime,
+                duration);
+        if (appointment != null) {
+            System.out.println("Appointment scheduled successfully with ID: " + appointment.getAppointmentId());
+        } else {
+            System.out.println("Failed to schedule appointment. Please check the following:");
+            System.out.println("- Appointment time must be between 7:00 and 22:00");
+            System.out.println("- Appointment must be within one year from now");
+            System.out.println("- You and the doctor must not have another appointment overlapping that time");
+        }
+    }
+    
+    private void scheduleAppointmentBySpecialty(int duration) {
+        String[] specialties = doctorService.getSpecialties();
+        if (specialties.length == 0) {
+            System.out.println("No doctors available in the system. Please try again later.");
+            return;
+        }
+        
+        String specialty = specialties[InputUtil.getMenuChoice("Select a specialty:", specialties) - 1];
         
-        Appointment appointment = appointmentService.scheduleAppointment(currentPatient.getId(), doctorId, appointmentTime);
+        Appointment appointment;
+        TimeSlot slot = chooseTimeSlot(
+                appointmentService.findNextAvailableSlotsForPatient(currentPatient.getId(), specialty, LocalDateTime.now(),
+                        SLOT_SUGGESTIONS, duration));
+        if (slot != null) {
+            appointment = appointmentService.scheduleAppointment(currentPatient.getId(), slot.getDoctorId(),
+                    slot.getStartTime(), duration);
+        } else {
+            LocalDateTime appointmentTime = InputUtil.getDateTime("Enter appointment date", "Enter appointment time");
+            appointment = appointmentService.scheduleAppointmentBySpecialty(currentPatient.getId(), specialty,
+                    appointmentTime, duration);
+        }
         if (appointment != null) {
+            Doctor doctor = doctorService.findDoctorById(appointment.getDoctorId());
             System.out.println("Appointment scheduled successfully with ID: " + appointment.getAppointmentId());
+            System.out.println("Assigned doctor: " + doctor.getName() + " (" + doctor.getSpecialty() + ")");
         } else {
             System.out.println("Failed to schedule appointment. Please check the following:");
             System.out.println("- Appointment time must be between 7:00 and 22:00");
             System.out.println("- Appointment must be within one year from now");
-            System.out.println("- You and the doctor must not have another appointment at the same time");
+            System.out.println("- You must not have another appointment overlapping that time");
+            System.out.println("- A " + specialty + " doctor must be free at that time");
         }
     }
+    
+    /**
+     * Let the patient pick one of the suggested slots, or return null to enter a time instead
+     */
+    private TimeSlot chooseTimeSlot(TimeSlot[] slots) {
+        if (slots.length == 0) {
+            System.out.println("No free slots found in the next year.");
+            return null;
+        }
+        
+        String[] options = new String[slots.length + 1];
+        for (int i = 0; i < slots.length; i++) {
+            Doctor doctor = doctorService.findDoctorById(slots[i].getDoctorId());
+            String doctorName = (doctor != null) ? doctor.getName() : "Unknown";
+            options[i] = slots[i].getStartTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+                    + " with " + doctorName;
+        }
+        options[slots.length] = "Enter a Different Date and Time";
+        
+        int choice = InputUtil.getMenuChoice("Next available slots:", options);
+        return choice <= slots.length ? slots[choice - 1] : null;
+    }
       private void viewMyAppointments() {
         System.out.println("\n----- My Appointments -----");
         Appointment[] appointments = appointmentService.getPatientAppointments(currentPatient.getId());
@@ -1,28 +1,46 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
+import datastructure.IntObjectMap;
 import datastructure.LinkedList;
 import datastructure.BinarySearchTree;
+import datastructure.RadixTrie;
+import datastructure.TrigramIndex;
 import model.Patient;
+import service.AuthService.Role;
+import util.ParallelRecordParser;
+import util.PersistencePipeline;
+import util.RecordTokenizer;
 
 /**
  * Service class for managing patients using a Singly Linked List
  */
 public class PatientService {
     private LinkedList<Patient> patients;
-    private BinarySearchTree<PatientBSTWrapper> patientBST;
+    private BinarySearchTree<PatientBSTWrapper> patientBST;  // Ordered by ID for sorted display
+    private IntObjectMap<Patient> patientsById;              // Primary-key index
+    private TrigramIndex nameIndex;                          // Substring search over names
+    private RadixTrie namePrefixes;                          // Autocomplete on any word of a name
+    private RadixTrie usernamePrefixes;                      // Autocomplete on usernames
+    private CredentialIndex credentials;                     // Username index shared with the other services, once set
+    private CompletableFuture<Void> lastSave;                // Write of the most recent change
     private int nextId;
     private static final String PATIENT_FILE = "data/Patient.txt";
 
     public PatientService() {
         this.patients = new LinkedList<>();
         this.patientBST = new BinarySearchTree<>();
+        this.patientsById = new IntObjectMap<>();
+        this.nameIndex = new TrigramIndex();
+        this.namePrefixes = new RadixTrie();
+        this.usernamePrefixes = new RadixTrie();
+        this.lastSave = CompletableFuture.completedFuture(null);
         this.nextId = 1;
         loadPatientsFromFile();
     }
@@ -34,43 +52,108 @@ public class PatientService {
         Patient patient = new Patient(nextId++, name, age, address, phoneNumber, username, password);
         patients.add(patient);
         patientBST.insert(new PatientBSTWrapper(patient));
+        patientsById.put(patient.getId(), patient);
+        indexPatient(patient);
+        if (credentials != null) {
+            credentials.add(username, Role.PATIENT, patient.getId());
+        }
         savePatients();
         return patient;
     }
 
+    /**
+     * Get the save of the most recent change to the patient list. It completes once the
+     * file is written, or completes exceptionally with the error that stopped the write.
+     */
+    public CompletableFuture<Void> getLastSave() {
+        return lastSave;
+    }
+
+    /**
+     * Register all patients in the shared credential index and keep it up to date from now on
+     */
+    public void setCredentialIndex(CredentialIndex credentials) {
+        this.credentials = credentials;
+        for (Patient patient : patients) {
+            credentials.add(patient.getUsername(), Role.PATIENT, patient.getId());
+        }
+    }
+
     /**
      * Remove a patient by ID
      */
     public boolean removePatientById(int id) {
+        Patient removedPatient = patientsById.remove(id);
+        if (removedPatient == null) {
+            return false;
+        }
         boolean removed = patients.remove(patient -> patient.getId() == id);
         if (removed) {
-            // Note: We don't remove from BST as most BST implementations don't support easy removal
-            // For a production app, this would need to be addressed
+            patientBST.delete(new PatientBSTWrapper(id));
+            nameIndex.remove(id);
+            namePrefixes.removeWords(TrigramIndex.normalize(removedPatient.getName()), id);
+            usernamePrefixes.remove(removedPatient.getUsername(), id);
+            if (credentials != null && credentials.remove(removedPatient.getUsername(), Role.PATIENT, id)) {
+                // Let another patient with the same username take over the registration
+                String username = removedPatient.getUsername();
+                Patient next = patients.find(patient -> patient.getUsername().equals(username));
+                if (next != null) {
+                    credentials.add(username, Role.PATIENT, next.getId());
+                }
+            }
             savePatients();
         }
         return removed;
     }
 
     /**
-     * Find a patient by name (partial match)
+     * Find the best-matching patient by name (partial match, ignoring case and accents)
      */
     public Patient findPatientByName(String name) {
-        return patients.find(patient -> 
-            patient.getName().toLowerCase().contains(name.toLowerCase()));
+        int[] ids = nameIndex.search(name);
+        return ids.length > 0 ? patientsById.get(ids[0]) : null;
+    }
+
+    /**
+     * Find all patients whose name contains the query, best matches first. Callers showing
+     * the result a page at a time should keep it and page over it with Page.of, rather than
+     * searching again for every page.
+     */
+    public Patient[] searchPatientsByName(String query) {
+        return toPatients(nameIndex.search(query));
     }
 
     /**
-     * Find a patient by ID using BST
+     * Autocomplete: get up to limit patients with a word of their name starting with the
+     * prefix (ignoring case and accents), in alphabetical order
+     */
+    public Patient[] prefixSearchByName(String prefix, int limit) {
+        return toPatients(namePrefixes.prefixSearch(TrigramIndex.normalize(prefix), limit));
+    }
+
+    /**
+     * Autocomplete: get up to limit patients whose username starts with the prefix, in
+     * alphabetical order
+     */
+    public Patient[] prefixSearchByUsername(String prefix, int limit) {
+        return toPatients(usernamePrefixes.prefixSearch(prefix, limit));
+    }
+
+    /**
+     * Find a patient by ID
      */
     public Patient findPatientById(int id) {
-        PatientBSTWrapper wrapper = patientBST.search(new PatientBSTWrapper(id));
-        return wrapper != null ? wrapper.getPatient() : null;
+        return patientsById.get(id);
     }
 
     /**
      * Find a patient by username
      */
     public Patient findPatientByUsername(String username) {
+        if (credentials != null) {
+            int id = credentials.findUserId(username, Role.PATIENT);
+            return id >= 0 ? patientsById.get(id) : null;
+        }
         return patients.find(patient -> 
             patient.getUsername().equals(username));
     }    /**
@@ -86,54 +169,87 @@ public class PatientService {
     }
 
     /**
-     * Load patients from file
+     * Load patients from file. Throws UncheckedIOException if the file exists but cannot be read.
      */
     private void loadPatientsFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PATIENT_FILE))) {
-            String line;
+        try {
+            // Parse in parallel chunks while reading, then index the patients in file order
+            Patient[] loaded = ParallelRecordParser.parse(ParallelRecordParser.lines(PATIENT_FILE),
+                    PatientService::parsePatient, Patient[]::new);
             int maxId = 0;
             
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 7) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    int age = Integer.parseInt(parts[2]);
-                    String address = parts[3];
-                    String phoneNumber = parts[4];
-                    String username = parts[5];
-                    String password = parts[6];
-                    
-                    Patient patient = new Patient(id, name, age, address, phoneNumber, username, password);
+            for (Patient patient : loaded) {
+                if (patient != null) {
                     patients.add(patient);
                     patientBST.insert(new PatientBSTWrapper(patient));
+                    patientsById.put(patient.getId(), patient);
+                    indexPatient(patient);
                     
-                    if (id > maxId) {
-                        maxId = id;
+                    if (patient.getId() > maxId) {
+                        maxId = patient.getId();
                     }
                 }
             }
             
             nextId = maxId + 1;
-        } catch (IOException e) {
+        } catch (NoSuchFileException e) {
             // File might not exist yet, which is fine
             System.out.println("Patient file not found. Starting with empty list.");
+        } catch (IOException e) {
+            // Going on with part of the file would overwrite the rest on the next save
+            throw new UncheckedIOException("Cannot read " + PATIENT_FILE + " (" + e.getMessage()
+                    + "). Fix or restore it before starting the clinic again", e);
         }
     }
 
+    /**
+     * Add a patient to the name and username search indexes
+     */
+    private void indexPatient(Patient patient) {
+        nameIndex.add(patient.getId(), patient.getName());
+        namePrefixes.insertWords(TrigramIndex.normalize(patient.getName()), patient.getId());
+        usernamePrefixes.insert(patient.getUsername(), patient.getId());
+    }
+
+    private Patient[] toPatients(int[] ids) {
+        Patient[] result = new Patient[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = patientsById.get(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Parse one patient record in file format, or return null if the line has too few fields
+     */
+    private static Patient parsePatient(RecordTokenizer tokenizer, String line) {
+        int id = tokenizer.reset(line).nextInt();
+        String name = tokenizer.nextString();
+        int age = tokenizer.nextInt();
+        String address = tokenizer.nextString();
+        String phoneNumber = tokenizer.nextString();
+        String username = tokenizer.nextString();
+        String password = tokenizer.nextString();
+        if (tokenizer.hasMissingFields()) {
+            return null;
+        }
+        return new Patient(id, name, age, address, phoneNumber, username, password);
+    }
+
     /**
      * Save patients to file
      */
     private void savePatients() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(PATIENT_FILE))) {
-            Patient[] allPatients = getAllPatients();
-            for (Patient patient : allPatients) {
-                writer.write(patient.toFileString());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving patients: " + e.getMessage());
+        Patient[] snapshot = new Patient[patients.size()];
+        int index = 0;
+        for (Patient patient : patients) {
+            snapshot[index++] = patient;
         }
+        lastSave = PersistencePipeline.getInstance().replace(new File(PATIENT_FILE), snapshot, Patient::toFileString);
+        lastSave.exceptionally(e -> {
+            System.err.println("Error saving patients: " + e.getMessage());
+            return null;
+        });
     }
 
     /**
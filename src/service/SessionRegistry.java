@@ -0,0 +1,152 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import util.DataFileReader;
+import util.PersistencePipeline;
+import util.RecordTokenizer;
+
+/**
+ * Registry of open doctor sessions, keyed by doctor ID. Login, logout and on-duty checks
+ * are single hash map operations and are safe to call from several threads.
+ *
+ * Sessions can optionally be journaled: each login and logout appends one short line to a
+ * journal file, which is replayed at startup so doctors stay on duty across restarts.
+ */
+public class SessionRegistry {
+    private static final String OP_LOGIN = "LOGIN";
+    private static final String OP_LOGOUT = "LOGOUT";
+
+    private final ConcurrentHashMap<Integer, LocalDateTime> sessions;  // Doctor ID -> login time
+    private final File journal;  // Null when journaling is off
+
+    /**
+     * Create a registry, replaying the given journal file if it is not null
+     */
+    public SessionRegistry(String journalFile) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.journal = journalFile != null ? new File(journalFile) : null;
+        if (journal != null) {
+            loadJournal();
+        }
+    }
+
+    /**
+     * Open a session for the doctor, returning false if one is already open
+     */
+    public boolean login(int doctorId, LocalDateTime loginTime) {
+        boolean[] opened = {false};
+        // Journal inside the map update so entries for one doctor are queued in the same order
+        sessions.computeIfAbsent(doctorId, id -> {
+            writeJournal(OP_LOGIN + "," + id + "," + loginTime);
+            opened[0] = true;
+            return loginTime;
+        });
+        return opened[0];
+    }
+
+    /**
+     * Close the doctor's session, returning false if none was open
+     */
+    public boolean logout(int doctorId) {
+        boolean[] closed = {false};
+        sessions.computeIfPresent(doctorId, (id, loginTime) -> {
+            writeJournal(OP_LOGOUT + "," + id);
+            closed[0] = true;
+            return null;
+        });
+        return closed[0];
+    }
+
+    /**
+     * Check if the doctor has an open session
+     */
+    public boolean isOnDuty(int doctorId) {
+        return sessions.containsKey(doctorId);
+    }
+
+    /**
+     * Get the time the doctor's session was opened, or null if there is none
+     */
+    public LocalDateTime getLoginTime(int doctorId) {
+        return sessions.get(doctorId);
+    }
+
+    /**
+     * Get the IDs of all doctors on duty, ordered by login time
+     */
+    public int[] getOnDutyDoctorIds() {
+        List<Map.Entry<Integer, LocalDateTime>> entries = new ArrayList<>(sessions.entrySet());
+        entries.sort(Map.Entry.<Integer, LocalDateTime>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey()));
+        int[] ids = new int[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).getKey();
+        }
+        return ids;
+    }
+
+    /**
+     * Get the number of open sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private void writeJournal(String line) {
+        if (journal == null) {
+            return;
+        }
+        PersistencePipeline.getInstance().append(journal, line).exceptionally(e -> {
+            System.err.println("Error saving doctor sessions: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Replay the journal, then rewrite it with only the sessions that are still open
+     */
+    private void loadJournal() {
+        try (DataFileReader reader = new DataFileReader(journal.toPath())) {
+            RecordTokenizer tokenizer = new RecordTokenizer();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    String operation = tokenizer.reset(line).nextString();
+                    int doctorId = tokenizer.nextInt();
+                    if (operation.equals(OP_LOGIN)) {
+                        LocalDateTime loginTime = tokenizer.nextDateTime();
+                        if (!tokenizer.hasMissingFields()) {
+                            sessions.put(doctorId, loginTime);
+                        }
+                    } else if (operation.equals(OP_LOGOUT) && !tokenizer.hasMissingFields()) {
+                        sessions.remove(doctorId);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping unreadable doctor session entry: " + line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // No journal yet, so no open sessions
+            return;
+        } catch (IOException e) {
+            // Keep the journal as it is rather than rewrite it from what was read
+            System.err.println("Error reading doctor sessions: " + e.getMessage());
+            return;
+        }
+
+        List<String> open = new ArrayList<>();
+        sessions.forEach((doctorId, loginTime) -> open.add(OP_LOGIN + "," + doctorId + "," + loginTime));
+        PersistencePipeline.getInstance().replace(journal, open.toArray(new String[0]), line -> line).exceptionally(e -> {
+            System.err.println("Error saving doctor sessions: " + e.getMessage());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a text data file. Data files are written as UTF-8. Older versions wrote
+ * them in the platform's default charset, so a line that is not valid UTF-8 is decoded with
+ * that charset instead; such files load as before and are stored as UTF-8 on the next save.
+ * Each line is decoded on its own, so a log segment appended to across an upgrade reads too.
+ *
+ * A missing file fails to open with NoSuchFileException.
+ */
+public class DataFileReader implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final CharsetDecoder decoder;  // Strict UTF-8: reports malformed input
+    private final Charset legacyCharset;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] line;  // Bytes of the line being read
+
+    public DataFileReader(String file) throws IOException {
+        this(Paths.get(file));
+    }
+
+    public DataFileReader(Path file) throws IOException {
+        this.in = Files.newInputStream(file);
+        this.decoder = StandardCharsets.UTF_8.newDecoder();
+        this.legacyCharset = Charset.defaultCharset();
+        this.buffer = new byte[BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.line = new byte[256];
+    }
+
+    /**
+     * Read the next line without its line terminator, or return null at the end of the file
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    break;
+                }
+            }
+            read = true;
+            byte b = buffer[position++];
+            if (b == '\n') {
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        if (!read) {
+            return null;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return decode(length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String decode(int length) {
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = line[i] >= 0;
+        }
+        if (ascii) {
+            return new String(line, 0, length, StandardCharsets.US_ASCII);
+        }
+        try {
+            return decoder.decode(ByteBuffer.wrap(line, 0, length)).toString();
+        } catch (CharacterCodingException e) {
+            return new String(line, 0, length, legacyCharset);
+        }
+    }
+}
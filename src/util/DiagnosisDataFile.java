@@ -0,0 +1,323 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+import datastructure.LruCache;
+import model.Diagnosis;
+
+/**
+ * Binary storage for diagnosis records, read through a memory-mapped buffer.
+ *
+ * The file starts with a header: magic, version, the operation log segment the file was
+ * written at, the next record ID and the record count. Each record follows as
+ *   int length | int diagnosisId | int appointmentId | int patientId | int doctorId |
+ *   long epochSecond (UTC) | int nanoOfSecond | three times (int byteLength, UTF-8 bytes)
+ * where length covers the whole record. Loading reads only the IDs; the time and text are
+ * read from the mapping when a record is displayed.
+ */
+public class DiagnosisDataFile {
+    private static final int MAGIC = 0x44494147;   // "DIAG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int FIXED_RECORD_SIZE = 32;
+    private static final int TEXT_CACHE_SIZE = 1024;   // Records whose text is kept decoded
+
+    private final MappedByteBuffer buffer;
+    private final long segment;
+    private final int nextId;
+    private final int recordCount;
+    private final LruCache<String[]> textCache;  // Decoded text by record offset
+
+    private DiagnosisDataFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a diagnosis data file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported diagnosis data file version " + buffer.getInt(4));
+        }
+        this.segment = buffer.getLong(8);
+        this.nextId = buffer.getInt(16);
+        this.recordCount = buffer.getInt(20);
+        this.textCache = new LruCache<>(TEXT_CACHE_SIZE);
+    }
+
+    /**
+     * Map an existing data file read-only
+     */
+    public static DiagnosisDataFile open(String file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return new DiagnosisDataFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the given records as a data file, synced to disk if the pipeline's durability
+     * level asks for it
+     */
+    public static void write(Path file, Diagnosis[] records, long segment, int nextId) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            out.writeInt(nextId);
+            out.writeInt(records.length);
+            for (Diagnosis record : records) {
+                // Carry the encoded text over from the old file instead of decoding it
+                if (record instanceof MappedDiagnosis && ((MappedDiagnosis) record).copyTo(out)) {
+                    continue;
+                }
+                byte[] complaint = encode(record.getComplaint());
+                byte[] diagnosis = encode(record.getDiagnosis());
+                byte[] medication = encode(record.getMedication());
+                out.writeInt(FIXED_RECORD_SIZE + 12 + complaint.length + diagnosis.length + medication.length);
+                writeFixedFields(out, record);
+                writeText(out, complaint);
+                writeText(out, diagnosis);
+                writeText(out, medication);
+            }
+            out.flush();
+            PersistencePipeline.getInstance().sync(channel);
+        }
+    }
+
+    /**
+     * Perform the given action on every record, in file order
+     */
+    public void forEach(Consumer<? super Diagnosis> action) throws IOException {
+        int position = HEADER_SIZE;
+        for (int i = 0; i < recordCount; i++) {
+            if (position + FIXED_RECORD_SIZE > buffer.limit()) {
+                throw new IOException("Diagnosis data file is truncated at record " + (i + 1));
+            }
+            int length = buffer.getInt(position);
+            if (length < FIXED_RECORD_SIZE || position + length > buffer.limit()) {
+                throw new IOException("Diagnosis data file is truncated at record " + (i + 1));
+            }
+            action.accept(new MappedDiagnosis(this, position, buffer.getInt(position + 4),
+                                              buffer.getInt(position + 8), buffer.getInt(position + 12),
+                                              buffer.getInt(position + 16)));
+            position += length;
+        }
+    }
+
+    /**
+     * Point the mapped records among the given ones at this file, so the file they were
+     * loaded from can be unmapped. The records must be the ones this file was written from,
+     * in the same order; records that do not match are left as they are.
+     */
+    public void rebind(Diagnosis[] records) {
+        int position = HEADER_SIZE;
+        for (int i = 0; i < recordCount && i < records.length; i++) {
+            if (position + FIXED_RECORD_SIZE > buffer.limit()) {
+                return;
+            }
+            if (records[i] instanceof MappedDiagnosis
+                    && records[i].getDiagnosisId() == buffer.getInt(position + 4)) {
+                ((MappedDiagnosis) records[i]).moveTo(this, position);
+            }
+            position += buffer.getInt(position);
+        }
+    }
+
+    /**
+     * Get the operation log segment this file was written at
+     */
+    public long getSegment() {
+        return segment;
+    }
+
+    /**
+     * Get the next record ID stored in the header
+     */
+    public int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Get the number of records in the file
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    private static void writeFixedFields(DataOutputStream out, Diagnosis record) throws IOException {
+        LocalDateTime time = record.getDiagnosisTime();
+        out.writeInt(record.getDiagnosisId());
+        out.writeInt(record.getAppointmentId());
+        out.writeInt(record.getPatientId());
+        out.writeInt(record.getDoctorId());
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static byte[] encode(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeText(DataOutputStream out, byte[] text) throws IOException {
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    /**
+     * Decode the length-prefixed string at the given offset
+     */
+    private static String readText(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        // Read through a duplicate so the shared buffer's position is never touched
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the three text fields of the record at the given offset, through the cache
+     */
+    private String[] text(int recordOffset) {
+        synchronized (textCache) {
+            String[] text = textCache.get(recordOffset);
+            if (text == null) {
+                int offset = recordOffset + FIXED_RECORD_SIZE;
+                String complaint = readText(buffer, offset);
+                offset += 4 + buffer.getInt(offset);
+                String diagnosis = readText(buffer, offset);
+                offset += 4 + buffer.getInt(offset);
+                String medication = readText(buffer, offset);
+                text = new String[] {complaint, diagnosis, medication};
+                textCache.put(recordOffset, text);
+            }
+            return text;
+        }
+    }
+
+    private LocalDateTime time(int recordOffset) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(recordOffset + 20),
+                                           buffer.getInt(recordOffset + 28), ZoneOffset.UTC);
+    }
+
+    /**
+     * Copy the encoded text fields of the record at the given offset without decoding them
+     */
+    private void copyText(int recordOffset, DataOutputStream out) throws IOException {
+        byte[] bytes = new byte[buffer.getInt(recordOffset) - FIXED_RECORD_SIZE];
+        ByteBuffer view = buffer.duplicate();
+        view.position(recordOffset + FIXED_RECORD_SIZE);
+        view.get(bytes);
+        out.write(bytes);
+    }
+
+    /**
+     * Diagnosis that keeps only its IDs and the offset of its record in the mapped file.
+     * The time and text are read from the file on every access, with the text going through
+     * the file's LRU cache, so loaded history costs no heap for its text. Calling a setter
+     * copies the fields onto the heap, after which the record no longer reads the file.
+     * Compaction moves the record to the newly written file.
+     */
+    private static class MappedDiagnosis extends Diagnosis {
+        private DiagnosisDataFile file;  // Null once materialized
+        private int offset;
+
+        MappedDiagnosis(DiagnosisDataFile file, int offset, int diagnosisId, int appointmentId,
+                        int patientId, int doctorId) {
+            super(diagnosisId, appointmentId, patientId, doctorId, null, null, null, null);
+            this.file = file;
+            this.offset = offset;
+        }
+
+        @Override
+        public synchronized LocalDateTime getDiagnosisTime() {
+            return file == null ? super.getDiagnosisTime() : file.time(offset);
+        }
+
+        @Override
+        public void setDiagnosisTime(LocalDateTime diagnosisTime) {
+            materialize();
+            super.setDiagnosisTime(diagnosisTime);
+        }
+
+        @Override
+        public synchronized String getComplaint() {
+            return file == null ? super.getComplaint() : file.text(offset)[0];
+        }
+
+        @Override
+        public void setComplaint(String complaint) {
+            materialize();
+            super.setComplaint(complaint);
+        }
+
+        @Override
+        public synchronized String getDiagnosis() {
+            return file == null ? super.getDiagnosis() : file.text(offset)[1];
+        }
+
+        @Override
+        public void setDiagnosis(String diagnosis) {
+            materialize();
+            super.setDiagnosis(diagnosis);
+        }
+
+        @Override
+        public synchronized String getMedication() {
+            return file == null ? super.getMedication() : file.text(offset)[2];
+        }
+
+        @Override
+        public void setMedication(String medication) {
+            materialize();
+            super.setMedication(medication);
+        }
+
+        /**
+         * Write this record's length, fixed fields and encoded text, unless it has been
+         * materialized
+         */
+        private synchronized boolean copyTo(DataOutputStream out) throws IOException {
+            if (file == null) {
+                return false;
+            }
+            out.writeInt(file.buffer.getInt(offset));
+            writeFixedFields(out, this);
+            file.copyText(offset, out);
+            return true;
+        }
+
+        private synchronized void moveTo(DiagnosisDataFile newFile, int newOffset) {
+            if (file != null) {
+                file = newFile;
+                offset = newOffset;
+            }
+        }
+
+        private synchronized void materialize() {
+            if (file == null) {
+                return;
+            }
+            String[] text = file.text(offset);
+            super.setDiagnosisTime(file.time(offset));
+            super.setComplaint(text[0]);
+            super.setDiagnosis(text[1]);
+            super.setMedication(text[2]);
+            file = null;
+        }
+    }
+}
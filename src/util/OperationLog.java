@@ -0,0 +1,351 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of record operations kept next to a snapshot file. Each log line holds an
+ * operation name followed by a comma and the record in its file format, e.g. "CREATE,1,2,3,...".
+ * Mutations append one line instead of rewriting the whole data file; the lines are written
+ * by the shared PersistencePipeline. Snapshots and segments are written as UTF-8 and read
+ * with DataFileReader.
+ *
+ * The log is split into numbered segments (data/X.log, data/X.log.1, data/X.log.2, ...).
+ * Compaction starts a new segment, writes the current state as a snapshot in the background
+ * and then deletes the older segments. The snapshot's first line records which segment it
+ * was taken at, so startup loads the snapshot and replays only the segments written after it.
+ *
+ * A log created with snapshot generations writes each snapshot to a new file named after its
+ * segment (data/X.dat.2, data/X.dat.5, ...) instead of replacing the old one, for snapshots
+ * the caller keeps memory-mapped: Windows cannot replace or delete a mapped file. The newest
+ * generation is the current snapshot; the caller deletes the older ones with
+ * deleteOldSnapshots once it no longer maps them.
+ */
+public class OperationLog {
+    private static final String SNAPSHOT_HEADER = "#SNAPSHOT";
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    // One shared daemon thread writes snapshots for all logs, in submission order
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Writes the current state as a snapshot file taken at the given segment. The writer
+     * must sync the file with PersistencePipeline.sync before returning.
+     */
+    public interface SnapshotWriter {
+        void write(Path file, long segment) throws IOException;
+    }
+
+    private final String snapshotFile;
+    private final File logFile;
+    private final boolean generations;  // Snapshots go to new numbered files instead of snapshotFile
+    private long firstSegment;     // Oldest segment not covered by the snapshot
+    private long currentSegment;   // Segment that appends go to
+    private int snapshotNextId;    // Next record ID stored with the snapshot, 0 if unknown
+    private int entriesSinceSnapshot;
+
+    public OperationLog(String snapshotFile, String logFile) {
+        this(snapshotFile, logFile, false);
+    }
+
+    /**
+     * Create a log whose snapshots are kept in numbered generation files if generations is set
+     */
+    public OperationLog(String snapshotFile, String logFile, boolean generations) {
+        this.snapshotFile = snapshotFile;
+        this.logFile = new File(logFile);
+        this.generations = generations;
+        this.firstSegment = 0;
+        this.currentSegment = 0;
+        this.snapshotNextId = 0;
+        this.entriesSinceSnapshot = 0;
+    }
+
+    /**
+     * Read every record line of the snapshot file. Files without a snapshot header are
+     * treated as a snapshot taken before the first segment.
+     */
+    public void loadSnapshot(Consumer<String> handler) throws IOException {
+        try (DataFileReader reader = new DataFileReader(snapshotFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(SNAPSHOT_HEADER)) {
+                    String[] parts = line.split(",");
+                    firstSegment = Long.parseLong(parts[1]);
+                    currentSegment = firstSegment;
+                    snapshotNextId = parts.length > 2 ? Integer.parseInt(parts[2]) : 0;
+                } else if (!line.isEmpty()) {
+                    handler.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replay every operation written since the snapshot, in the order it was written.
+     * A line that cannot be applied is reported and skipped.
+     */
+    public void replay(BiConsumer<String, String> handler) throws IOException {
+        for (long segment : listSegments()) {
+            if (segment >= firstSegment) {
+                replaySegment(segmentFile(segment), handler);
+                currentSegment = segment;
+            }
+        }
+    }
+
+    /**
+     * Record where a snapshot read by the caller was taken, for snapshot files that are not
+     * in the text format read by loadSnapshot
+     */
+    public void restoreSnapshot(long segment, int nextId) {
+        firstSegment = segment;
+        currentSegment = segment;
+        snapshotNextId = nextId;
+    }
+
+    /**
+     * Queue one operation to be appended to the end of the current segment. The returned
+     * future completes once the entry has been written by the persistence pipeline.
+     */
+    public CompletableFuture<Void> append(String operation, String record) {
+        entriesSinceSnapshot++;
+        return PersistencePipeline.getInstance().append(segmentFile(currentSegment), operation + "," + record);
+    }
+
+    /**
+     * Check if enough operations have piled up since the last snapshot to be worth compacting
+     */
+    public boolean needsCompaction() {
+        return entriesSinceSnapshot >= COMPACTION_THRESHOLD;
+    }
+
+    /**
+     * Compact the log. The caller passes the current state as record lines, captured after
+     * the last append. Appends continue in a new segment right away, while the snapshot is
+     * written and the old segments are deleted in the background.
+     */
+    public CompletableFuture<Void> compact(String[] records, int nextId) {
+        return compact((file, segment) -> writeTextSnapshot(file, records, nextId, segment));
+    }
+
+    /**
+     * Compact the log, letting the caller write the snapshot in its own format. The writer
+     * runs in the background and must only use state captured before this call. The
+     * returned future completes on the compaction thread once the new snapshot has replaced
+     * the old one and the old segments are deleted, before the next compaction starts.
+     */
+    public CompletableFuture<Void> compact(SnapshotWriter writer) {
+        long snapshotSegment = currentSegment + 1;
+        currentSegment = snapshotSegment;
+        entriesSinceSnapshot = 0;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        // Queued behind the appends made so far, so the old segments are complete on disk
+        // before the snapshot replaces them
+        PersistencePipeline.getInstance().submit(() -> {
+            // Create the new segment up front so replay sees it even if nothing is appended to it
+            segmentFile(snapshotSegment).createNewFile();
+            COMPACTOR.execute(() -> {
+                try {
+                    writeSnapshot(writer, snapshotSegment);
+                    for (long segment : listSegments()) {
+                        if (segment < snapshotSegment) {
+                            segmentFile(segment).delete();
+                        }
+                    }
+                    done.complete(null);
+                } catch (IOException e) {
+                    System.err.println("Error compacting " + snapshotFile + ": " + e.getMessage());
+                    done.completeExceptionally(e);
+                }
+            });
+        }).exceptionally(e -> {
+            System.err.println("Error compacting " + snapshotFile + ": " + e.getMessage());
+            done.completeExceptionally(e);
+            return null;
+        });
+        return done;
+    }
+
+    /**
+     * Get the file holding the current snapshot. With generations this is the newest
+     * generation file, or the plain snapshot file written by older versions if there is none.
+     */
+    public String getSnapshotFile() {
+        if (!generations) {
+            return snapshotFile;
+        }
+        long[] snapshots = listNumbered(new File(snapshotFile));
+        return snapshots.length == 0 ? snapshotFile : generationFile(snapshots[snapshots.length - 1]).getPath();
+    }
+
+    /**
+     * Delete the snapshot generations older than the current one. The caller must no longer
+     * map them; a file that cannot be deleted yet is left for the next call.
+     */
+    public void deleteOldSnapshots() {
+        if (!generations) {
+            return;
+        }
+        long[] snapshots = listNumbered(new File(snapshotFile));
+        for (int i = 0; i < snapshots.length - 1; i++) {
+            generationFile(snapshots[i]).delete();
+        }
+    }
+
+    /**
+     * Get the next record ID stored with the snapshot, or 0 if the snapshot has none
+     */
+    public int getSnapshotNextId() {
+        return snapshotNextId;
+    }
+
+    /**
+     * Get the segment the snapshot was taken at, 0 if it has no header
+     */
+    public long getSnapshotSegment() {
+        return firstSegment;
+    }
+
+    private void replaySegment(File segmentFile, BiConsumer<String, String> handler) throws IOException {
+        truncateTornTail(segmentFile);
+        try (DataFileReader reader = new DataFileReader(segmentFile.toPath())) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                entriesSinceSnapshot++;
+                int separator = line.indexOf(',');
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    handler.accept(line.substring(0, separator), line.substring(separator + 1));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping unreadable entry at " + segmentFile + ":" + lineNumber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the snapshot to a temporary file and move it over the old one, or to the new
+     * generation's name, so a crash never leaves a half-written snapshot behind. The file is
+     * synced before the move and the directory after it, so the old segments are only
+     * deleted once the new snapshot is on disk.
+     */
+    private void writeSnapshot(SnapshotWriter snapshotWriter, long segment) throws IOException {
+        File targetFile = generations ? generationFile(segment) : new File(snapshotFile);
+        Path target = targetFile.getAbsoluteFile().toPath();
+        Path temp = new File(targetFile.getPath() + ".tmp").toPath();
+        snapshotWriter.write(temp, segment);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PersistencePipeline.getInstance().syncDirectory(target.getParent());
+    }
+
+    private static void writeTextSnapshot(Path file, String[] records, int nextId, long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            writer.write(SNAPSHOT_HEADER + "," + segment + "," + nextId);
+            writer.newLine();
+            for (String record : records) {
+                writer.write(record);
+                writer.newLine();
+            }
+            writer.flush();
+            PersistencePipeline.getInstance().sync(channel);
+        }
+    }
+
+    /**
+     * Get the numbers of all segment files on disk, in ascending order
+     */
+    private long[] listSegments() {
+        return listNumbered(logFile);
+    }
+
+    /**
+     * Get the numbers of the files named after the given one on disk (X as 0, X.1, X.2, ...),
+     * in ascending order
+     */
+    private static long[] listNumbered(File baseFile) {
+        File directory = baseFile.getAbsoluteFile().getParentFile();
+        String[] names = directory != null ? directory.list() : null;
+        if (names == null) {
+            return new long[0];
+        }
+
+        String baseName = baseFile.getName();
+        long[] segments = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.equals(baseName)) {
+                segments[count++] = 0;
+            } else if (name.startsWith(baseName + ".")) {
+                try {
+                    long segment = Long.parseLong(name.substring(baseName.length() + 1));
+                    segments[count++] = segment;
+                } catch (NumberFormatException e) {
+                    // Not a numbered file, e.g. a temporary one
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(segments, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private File segmentFile(long segment) {
+        return segment == 0 ? logFile : new File(logFile.getPath() + "." + segment);
+    }
+
+    private File generationFile(long segment) {
+        // Generation 0 is the plain snapshot file written by older versions
+        return segment == 0 ? new File(snapshotFile) : new File(snapshotFile + "." + segment);
+    }
+
+    /**
+     * Drop an incomplete last line left by a crash mid-append, so the next append
+     * starts on a fresh line instead of being glued onto the torn one
+     */
+    private static void truncateTornTail(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            long position = length;
+            while (position > 0) {
+                raf.seek(position - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                position--;
+            }
+            if (position < length) {
+                System.err.println("Discarding incomplete last entry in " + file);
+                raf.setLength(position);
+            }
+        }
+    }
+}
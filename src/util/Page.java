@@ -0,0 +1,63 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * One page of a larger list of results
+ */
+public class Page<T> {
+    private final T[] items;
+    private final int pageNumber;   // Zero-based
+    private final int pageSize;
+    private final int totalCount;   // Results across all pages
+
+    public Page(T[] items, int pageNumber, int pageSize, int totalCount) {
+        this.items = items;
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Get one page of a full result list. Pages are numbered from zero.
+     */
+    public static <T> Page<T> of(T[] results, int pageNumber, int pageSize) {
+        int from = (int) Math.min((long) pageNumber * pageSize, results.length);
+        int to = (int) Math.min((long) from + pageSize, results.length);
+        return new Page<>(Arrays.copyOfRange(results, from, to), pageNumber, pageSize, results.length);
+    }
+
+    public T[] getItems() {
+        return items;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Get the number of pages needed for all results
+     */
+    public int getTotalPages() {
+        return pageSize > 0 ? (totalCount + pageSize - 1) / pageSize : 0;
+    }
+
+    /**
+     * Check if there are results after this page
+     */
+    public boolean hasNextPage() {
+        return (long) (pageNumber + 1) * pageSize < totalCount;
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+}
@@ -0,0 +1,166 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Parses the lines of a data file into records on a fork-join pool while the file is still
+ * being read. Every CHUNK_SIZE lines are handed to the pool as one task with its own
+ * RecordTokenizer, so reading and parsing overlap, and only the lines of the chunks in
+ * flight are held in memory. Results keep the order of the lines, so the caller can index
+ * them sequentially afterwards exactly as a single-threaded load would.
+ */
+public class ParallelRecordParser {
+    private static final int CHUNK_SIZE = 2048;  // Lines parsed by one task
+
+    /**
+     * Parses one line into a record, or returns null to skip it
+     */
+    public interface LineParser<T> {
+        T parse(RecordTokenizer tokenizer, String line);
+    }
+
+    /**
+     * Feeds the lines of a file to a consumer, in order
+     */
+    public interface LineSource {
+        void forEach(Consumer<String> consumer) throws IOException;
+    }
+
+    private ParallelRecordParser() {
+    }
+
+    /**
+     * Get a source reading every line of a data file
+     */
+    public static LineSource lines(String file) {
+        return consumer -> {
+            try (DataFileReader reader = new DataFileReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    consumer.accept(line);
+                }
+            }
+        };
+    }
+
+    /**
+     * Parse all lines of a source on the common pool. The result has one slot per line, in
+     * line order, holding null where the parser skipped the line. A line the parser fails on
+     * stops the parse with an IOException naming the line, so the caller does not go on
+     * with a partial file and later save it over the full one.
+     */
+    public static <T> T[] parse(LineSource source, LineParser<T> parser, IntFunction<T[]> arrayFactory)
+            throws IOException {
+        return parse(source, parser, arrayFactory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parse all lines of a source on the given pool
+     */
+    public static <T> T[] parse(LineSource source, LineParser<T> parser, IntFunction<T[]> arrayFactory,
+                                ForkJoinPool pool) throws IOException {
+        Chunks<T> chunks = new Chunks<>(parser, arrayFactory, pool);
+        try {
+            source.forEach(chunks::add);
+            return chunks.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lines collected into chunks and the parse tasks of the chunks handed out so far
+     */
+    private static final class Chunks<T> {
+        private final LineParser<T> parser;
+        private final IntFunction<T[]> arrayFactory;
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+        private final ArrayDeque<ForkJoinTask<T[]>> inFlight;  // Oldest first
+        private final List<T[]> parsed;                         // Finished chunks, in line order
+        private String[] lines;
+        private int lineCount;     // Lines in the current chunk
+        private int firstLine;     // Index in the file of the current chunk's first line
+
+        private Chunks(LineParser<T> parser, IntFunction<T[]> arrayFactory, ForkJoinPool pool) {
+            this.parser = parser;
+            this.arrayFactory = arrayFactory;
+            this.pool = pool;
+            // Enough to keep every worker busy while the reader fills the next chunk
+            this.maxInFlight = pool.getParallelism() * 2;
+            this.inFlight = new ArrayDeque<>();
+            this.parsed = new ArrayList<>();
+            this.lines = new String[CHUNK_SIZE];
+            this.lineCount = 0;
+            this.firstLine = 0;
+        }
+
+        void add(String line) {
+            lines[lineCount++] = line;
+            if (lineCount == CHUNK_SIZE) {
+                submitChunk();
+            }
+        }
+
+        T[] finish() {
+            if (inFlight.isEmpty() && parsed.isEmpty()) {
+                // A small file is not worth a task
+                return parseChunk(Arrays.copyOf(lines, lineCount), firstLine);
+            }
+            if (lineCount > 0) {
+                submitChunk();
+            }
+            while (!inFlight.isEmpty()) {
+                parsed.add(inFlight.poll().join());
+            }
+
+            int total = 0;
+            for (T[] chunk : parsed) {
+                total += chunk.length;
+            }
+            T[] records = arrayFactory.apply(total);
+            int position = 0;
+            for (T[] chunk : parsed) {
+                System.arraycopy(chunk, 0, records, position, chunk.length);
+                position += chunk.length;
+            }
+            return records;
+        }
+
+        private void submitChunk() {
+            String[] chunk = lineCount == CHUNK_SIZE ? lines : Arrays.copyOf(lines, lineCount);
+            int chunkStart = firstLine;
+            inFlight.add(pool.submit(() -> parseChunk(chunk, chunkStart)));
+            firstLine += lineCount;
+            lines = new String[CHUNK_SIZE];
+            lineCount = 0;
+            // Wait for the oldest chunk rather than reading far ahead of the workers
+            if (inFlight.size() > maxInFlight) {
+                parsed.add(inFlight.poll().join());
+            }
+        }
+
+        private T[] parseChunk(String[] chunk, int chunkStart) {
+            RecordTokenizer tokenizer = new RecordTokenizer();
+            T[] records = arrayFactory.apply(chunk.length);
+            for (int i = 0; i < chunk.length; i++) {
+                try {
+                    records[i] = parser.parse(tokenizer, chunk[i]);
+                } catch (RuntimeException e) {
+                    throw new UncheckedIOException(new IOException(
+                            "Unreadable record at line " + (chunkStart + i + 1) + ": " + e.getMessage(), e));
+                }
+            }
+            return records;
+        }
+    }
+}
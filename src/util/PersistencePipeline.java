@@ -0,0 +1,306 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Shared background writer for all data files. Services queue their writes here instead of
+ * opening files on the caller's thread. A single writer thread collects the writes that
+ * arrive within one commit window and applies them together: each file is opened once per
+ * window, and synced once if the durability level asks for it.
+ *
+ * Every write returns a CompletableFuture that completes once the write has reached the
+ * configured durability level, or completes exceptionally with the IOException that
+ * stopped it. Writes are applied in the order they were queued. Text is written as UTF-8.
+ *
+ * Configuration, read once at startup:
+ *   clinic.commitWindowMs  - how long to wait for more writes after the first one (default 2)
+ *   clinic.durability      - WRITE to hand data to the OS, FSYNC to also sync it to disk (default FSYNC)
+ */
+public class PersistencePipeline {
+    /**
+     * How far a write must get before its future completes
+     */
+    public enum Durability {
+        WRITE,  // Written to the operating system, lost only if the machine crashes
+        FSYNC   // Synced to the storage device
+    }
+
+    /**
+     * File work that must run in order with the queued writes, e.g. log compaction
+     */
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final PersistencePipeline INSTANCE = new PersistencePipeline(
+            Long.getLong("clinic.commitWindowMs", 2),
+            durabilityProperty());
+
+    private final LinkedBlockingQueue<Write> queue;
+    private final long windowMillis;
+    private final Durability durability;
+
+    private PersistencePipeline(long windowMillis, Durability durability) {
+        this.queue = new LinkedBlockingQueue<>();
+        this.windowMillis = windowMillis;
+        this.durability = durability;
+
+        Thread writer = new Thread(this::run, "persistence-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Writes still queued when the application exits are finished before the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "persistence-shutdown"));
+    }
+
+    /**
+     * Read clinic.durability, falling back to FSYNC on a value that names no level
+     */
+    private static Durability durabilityProperty() {
+        String value = System.getProperty("clinic.durability", "FSYNC");
+        try {
+            return Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown clinic.durability \"" + value + "\", using FSYNC");
+            return Durability.FSYNC;
+        }
+    }
+
+    /**
+     * Get the pipeline shared by all services
+     */
+    public static PersistencePipeline getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue lines to be appended to the end of a file
+     */
+    public CompletableFuture<Void> append(File file, String... lines) {
+        return enqueue(new Write(Write.APPEND, file, lines, null));
+    }
+
+    /**
+     * Queue a full replacement of a file's contents with one line per record. The records
+     * are formatted on the caller's thread, so changes made to them after this call returns
+     * are not written. When several replacements of the same file land in one commit window,
+     * only the last one is written.
+     */
+    public <T> CompletableFuture<Void> replace(File file, T[] records, Function<? super T, String> formatter) {
+        String[] lines = new String[records.length];
+        for (int i = 0; i < records.length; i++) {
+            lines[i] = formatter.apply(records[i]);
+        }
+        return enqueue(new Write(Write.REPLACE, file, lines, null));
+    }
+
+    /**
+     * Queue a task to run on the writer thread after every write queued before it
+     */
+    public CompletableFuture<Void> submit(Task task) {
+        return enqueue(new Write(Write.TASK, null, null, task));
+    }
+
+    /**
+     * Get a handle that completes once everything queued so far has been written
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(() -> { });
+    }
+
+    /**
+     * Get the configured durability level
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sync a file written outside the pipeline to disk, if the durability level asks for it
+     */
+    public void sync(FileChannel channel) throws IOException {
+        if (durability == Durability.FSYNC) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Sync a directory's entries to disk, e.g. after moving a file into it, if the durability
+     * level asks for it. Skipped where directories cannot be opened (Windows), since the
+     * file system syncs renames itself there.
+     */
+    public void syncDirectory(Path directory) throws IOException {
+        if (durability != Durability.FSYNC) {
+            return;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Write write) {
+        queue.add(write);
+        return write.done;
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                if (windowMillis > 0) {
+                    // Give concurrent callers one window to join this commit
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0) {
+                        Write next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+                commit(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Apply a batch in order. File writes between two tasks are grouped per file; each task
+     * runs only after the writes queued before it are done.
+     */
+    private void commit(List<Write> batch) {
+        Map<File, List<Write>> group = new LinkedHashMap<>();
+        for (Write write : batch) {
+            if (write.kind == Write.TASK) {
+                writeGroup(group);
+                group.clear();
+                try {
+                    write.task.run();
+                    write.done.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    write.done.completeExceptionally(e);
+                }
+            } else {
+                group.computeIfAbsent(write.file, file -> new ArrayList<>()).add(write);
+            }
+        }
+        writeGroup(group);
+    }
+
+    private void writeGroup(Map<File, List<Write>> group) {
+        for (Map.Entry<File, List<Write>> entry : group.entrySet()) {
+            List<Write> writes = entry.getValue();
+            try {
+                writeFile(entry.getKey(), writes);
+                for (Write write : writes) {
+                    write.done.complete(null);
+                }
+            } catch (IOException e) {
+                for (Write write : writes) {
+                    write.done.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply all writes to one file with a single open. Everything before the last
+     * replacement is overwritten by it, so writing starts from there.
+     */
+    private void writeFile(File file, List<Write> writes) throws IOException {
+        int start = 0;
+        for (int i = writes.size() - 1; i >= 0; i--) {
+            if (writes.get(i).kind == Write.REPLACE) {
+                start = i;
+                break;
+            }
+        }
+        boolean replace = writes.get(start).kind == Write.REPLACE;
+
+        // A replacement goes to a temporary file first so the old contents survive a crash
+        File target = replace ? new File(file.getPath() + ".tmp") : file;
+        try (FileOutputStream stream = new FileOutputStream(target, !replace)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            for (int i = start; i < writes.size(); i++) {
+                Write write = writes.get(i);
+                for (String line : write.lines) {
+                    writer.write(line);
+                    writer.write(System.lineSeparator());
+                }
+            }
+            writer.flush();
+            if (durability == Durability.FSYNC) {
+                stream.getFD().sync();
+            }
+        }
+        if (replace) {
+            Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(file.getAbsoluteFile().getParentFile().toPath());
+        }
+    }
+
+    private void drain() {
+        try {
+            flush().get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | ExecutionException e) {
+            System.err.println("Error flushing pending writes: " + e.getMessage());
+        }
+    }
+
+    private static final class Write {
+        private static final int APPEND = 0;
+        private static final int REPLACE = 1;
+        private static final int TASK = 2;
+
+        private final int kind;
+        private final File file;
+        private final String[] lines;
+        private final Task task;
+        private final CompletableFuture<Void> done;
+
+        private Write(int kind, File file, String[] lines, Task task) {
+            this.kind = kind;
+            this.file = file;
+            this.lines = lines;
+            this.task = task;
+            this.done = new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package util;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single-pass reader for the comma-separated records in the data files. A comma preceded by
+ * a backslash ("\,") belongs to the field and is unescaped when the field is read.
+ * Fields are found lazily: each read scans only its own field, so a line is walked once.
+ * Numbers are parsed straight from the line without creating substrings, and one instance
+ * can be reset and reused for every line of a file. Instances are not thread-safe.
+ *
+ * Reading past the last field returns an empty value (0, "", false or null) and is
+ * reported by hasMissingFields, so a caller reads a record's fields first and then checks
+ * whether the line had enough of them.
+ */
+public class RecordTokenizer {
+    private String line;
+    private int position;   // Start of the next field, or line.length() + 1 when there is none
+    private boolean missingFields;
+
+    public RecordTokenizer() {
+        reset("");
+    }
+
+    /**
+     * Start reading a new line. An empty line has no fields.
+     */
+    public RecordTokenizer reset(String line) {
+        this.line = line;
+        this.position = line.isEmpty() ? 1 : 0;
+        this.missingFields = false;
+        return this;
+    }
+
+    /**
+     * Check if there is another field to read
+     */
+    public boolean hasNext() {
+        return position <= line.length();
+    }
+
+    /**
+     * Check if any read since the last reset went past the last field
+     */
+    public boolean hasMissingFields() {
+        return missingFields;
+    }
+
+    /**
+     * Read the next field as text, unescaping any escaped commas
+     */
+    public String nextString() {
+        if (isMissing()) {
+            return "";
+        }
+        int start = position;
+        StringBuilder unescaped = null;
+        int i = start;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == ',') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder(line.length() - start);
+                    unescaped.append(line, start, i);
+                }
+                unescaped.append(',');
+                i += 2;
+                continue;
+            }
+            if (c == ',') {
+                break;
+            }
+            if (unescaped != null) {
+                unescaped.append(c);
+            }
+            i++;
+        }
+        position = i + 1;
+        return unescaped != null ? unescaped.toString() : line.substring(start, i);
+    }
+
+    /**
+     * Read the next field as an int
+     */
+    public int nextInt() {
+        if (isMissing()) {
+            return 0;
+        }
+        int i = position;
+        int end = line.length();
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        while (i < end && line.charAt(i) != ',') {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid number in record: " + line);
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Number out of range in record: " + line);
+            }
+            i++;
+        }
+        if (i == digitsStart) {
+            throw new NumberFormatException("Missing number in record: " + line);
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Number out of range in record: " + line);
+        }
+        position = i + 1;
+        return (int) value;
+    }
+
+    /**
+     * Read the next field as a boolean, following Boolean.parseBoolean
+     */
+    public boolean nextBoolean() {
+        return Boolean.parseBoolean(nextString());
+    }
+
+    /**
+     * Read the next field as an ISO-8601 date-time
+     */
+    public LocalDateTime nextDateTime() {
+        return isMissing() ? null : LocalDateTime.parse(nextString());
+    }
+
+    /**
+     * Skip the next field without reading it
+     */
+    public void skip() {
+        nextString();
+    }
+
+    /**
+     * Record a read past the last field, returning true if there is no field to read
+     */
+    private boolean isMissing() {
+        if (hasNext()) {
+            return false;
+        }
+        missingFields = true;
+        return true;
+    }
+}